@@ -0,0 +1,83 @@
+package de.ub0r.android.wifibarcode;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import de.ub0r.android.logg0r.Log;
+import de.ub0r.android.wifibarcode.core.Metrics;
+
+/**
+ * In-memory LRU cache of rendered barcodes, shared by all activities.
+ * Barcodes are rendered at module resolution, so the key is content and error correction level.
+ */
+final class BarcodeCache {
+
+    private static final String TAG = "BarcodeCache";
+
+    /**
+     * Max. size of all cached barcodes in bytes.
+     */
+    private static final int MAX_SIZE = 512 * 1024;
+
+    private static BarcodeCache sInstance;
+
+    private final BarcodeRenderer mRenderer = new BarcodeRenderer();
+
+    private final LruCache<String, Bitmap> mCache = new LruCache<String, Bitmap>(MAX_SIZE) {
+        @Override
+        protected int sizeOf(final String key, final Bitmap value) {
+            return value.getRowBytes() * value.getHeight();
+        }
+    };
+
+    private BarcodeCache() {
+    }
+
+    /**
+     * @return shared {@link BarcodeCache}
+     */
+    static synchronized BarcodeCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new BarcodeCache();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Get barcode from cache or encode it.
+     *
+     * @param content barcode's content
+     * @param level   {@link ErrorCorrectionLevel}
+     * @return barcode with one pixel per module, do not modify
+     */
+    synchronized Bitmap get(final String content, final ErrorCorrectionLevel level) throws WriterException {
+        final String key = level.name() + ':' + content;
+        Bitmap barcode = mCache.get(key);
+        if (barcode == null) {
+            Metrics.increment(Metrics.BARCODE_CACHE_MISSES);
+            barcode = mRenderer.encode(content, level);
+            mCache.put(key, barcode);
+        } else {
+            Metrics.increment(Metrics.BARCODE_CACHE_HITS);
+        }
+        return barcode;
+    }
+
+    /**
+     * Release memory.
+     *
+     * @param level level as passed to {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    synchronized void trimMemory(final int level) {
+        Log.d(TAG, "trimMemory(", level, ")");
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            mCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(MAX_SIZE / 4);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package de.ub0r.android.wifibarcode;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Draw a barcode rendered at module resolution, scaled up with nearest neighbour sampling.
+ * The barcode is drawn as the largest centered square fitting the bounds, using an integer
+ * number of pixels per module where possible.
+ */
+final class BarcodeDrawable extends Drawable {
+
+    private final Bitmap mModules;
+    private final int mIntrinsicSize;
+    private final Paint mPaint = new Paint();
+    private final Rect mDst = new Rect();
+
+    /**
+     * @param modules       barcode with one pixel per module
+     * @param intrinsicSize intrinsic width and height, -1 to fill the bounds
+     */
+    BarcodeDrawable(final Bitmap modules, final int intrinsicSize) {
+        mModules = modules;
+        mIntrinsicSize = intrinsicSize;
+        mPaint.setFilterBitmap(false);
+        mPaint.setAntiAlias(false);
+        mPaint.setDither(false);
+    }
+
+    @Override
+    protected void onBoundsChange(final Rect bounds) {
+        final int modules = mModules.getWidth();
+        int side = Math.min(bounds.width(), bounds.height());
+        if (side >= modules) {
+            side -= side % modules;
+        }
+        final int left = bounds.left + (bounds.width() - side) / 2;
+        final int top = bounds.top + (bounds.height() - side) / 2;
+        mDst.set(left, top, left + side, top + side);
+    }
+
+    @Override
+    public void draw(final Canvas canvas) {
+        canvas.drawBitmap(mModules, null, mDst, mPaint);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mIntrinsicSize;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mIntrinsicSize;
+    }
+
+    @Override
+    public void setAlpha(final int alpha) {
+        mPaint.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(final ColorFilter cf) {
+        mPaint.setColorFilter(cf);
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
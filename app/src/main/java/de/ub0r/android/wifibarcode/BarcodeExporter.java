@@ -0,0 +1,428 @@
+package de.ub0r.android.wifibarcode;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.pdf.PdfDocument;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.ub0r.android.logg0r.Log;
+
+/**
+ * Export barcodes of many networks into printable sheets.
+ * Barcodes are encoded on a bounded worker pool and drawn in order as soon as they are ready,
+ * only a small window of barcodes is held in memory. Writes a multi-page PDF on KitKat and
+ * newer, PNG sheets on older devices. Survives configuration changes, see
+ * {@link #setCallback(Callback)}.
+ */
+final class BarcodeExporter extends AsyncTask<Void, Void, ArrayList<File>> {
+
+    private static final String TAG = "BarcodeExporter";
+
+    /**
+     * Directory below the cache dir holding exported files, see res/xml/export_paths.xml.
+     */
+    static final String EXPORT_DIR = "export";
+
+    static final String MIME_PDF = "application/pdf";
+    static final String MIME_PNG = "image/png";
+
+    private static final int MAX_THREADS = 4;
+
+    private static final int COLUMNS = 2;
+    private static final int ROWS = 3;
+    private static final int PER_PAGE = COLUMNS * ROWS;
+
+    /**
+     * A4 in PDF points.
+     */
+    private static final int PAGE_WIDTH = 595;
+    private static final int PAGE_HEIGHT = 842;
+
+    /**
+     * Scale of PNG sheets relative to PDF pages, about 150dpi.
+     */
+    private static final int PNG_SCALE = 2;
+
+    private static final int MARGIN = 18;
+    private static final int TEXT_SIZE = 12;
+
+    /**
+     * Single barcode to export.
+     */
+    static final class Item {
+        final String title;
+        final String content;
+
+        Item(final String title, final String content) {
+            this.title = title;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Receive results from {@link BarcodeExporter}, called on the UI thread.
+     */
+    interface Callback {
+
+        /**
+         * Export finished.
+         *
+         * @param files exported files
+         * @param type  mime type of the files
+         */
+        void onExportDone(ArrayList<File> files, String type);
+
+        /**
+         * Export failed.
+         */
+        void onExportFailed();
+    }
+
+    /**
+     * {@link BarcodeRenderer} is not thread safe, keep one per worker.
+     */
+    private static final ThreadLocal<BarcodeRenderer> RENDERER = new ThreadLocal<BarcodeRenderer>() {
+        @Override
+        protected BarcodeRenderer initialValue() {
+            return new BarcodeRenderer();
+        }
+    };
+
+    private final File mDir;
+    private final List<Item> mItems;
+    private Callback mCallback;
+    private String mType;
+    private boolean mDone = false;
+    private ArrayList<File> mFiles;
+
+    BarcodeExporter(final Context context, final List<Item> items, final Callback callback) {
+        mDir = getExportDir(context);
+        mItems = items;
+        mCallback = callback;
+    }
+
+    /**
+     * Attach a new callback, e.g. after the activity was recreated.
+     * Delivers the result right away if the export finished while no callback was attached.
+     *
+     * @param callback {@link Callback}, null to detach
+     */
+    void setCallback(final Callback callback) {
+        mCallback = callback;
+        if (mDone) {
+            deliver();
+        }
+    }
+
+    /**
+     * @return directory holding exported files
+     */
+    static File getExportDir(final Context context) {
+        return new File(context.getCacheDir(), EXPORT_DIR);
+    }
+
+    /**
+     * Delete all exported files.
+     */
+    static void deleteExports(final Context context) {
+        final File[] files = getExportDir(context).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (!f.delete()) {
+                Log.e(TAG, "error deleting file: ", f);
+            }
+        }
+    }
+
+    @Override
+    protected ArrayList<File> doInBackground(final Void... params) {
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            Log.e(TAG, "error creating dir: ", mDir);
+            return null;
+        }
+        final Sheet sheet;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            sheet = new PdfSheet(new File(mDir, "wifi.pdf"));
+            mType = MIME_PDF;
+        } else {
+            sheet = new PngSheet(mDir);
+            mType = MIME_PNG;
+        }
+
+        final int count = mItems.size();
+        final int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // ArrayDeque needs API 9
+        final Queue<Future<Bitmap>> pending = new LinkedList<>();
+        final Painter painter = new Painter(sheet.getScale());
+        try {
+            int submitted = 0;
+            Canvas canvas = null;
+            for (int i = 0; i < count; i++) {
+                while (submitted < count && pending.size() < threads * 2) {
+                    pending.add(pool.submit(new EncodeTask(mItems.get(submitted).content)));
+                    ++submitted;
+                }
+                final Bitmap barcode = pending.poll().get();
+                if (isCancelled()) {
+                    return null;
+                }
+                if (i % PER_PAGE == 0) {
+                    if (canvas != null) {
+                        sheet.endPage();
+                    }
+                    canvas = sheet.beginPage();
+                }
+                painter.drawCell(canvas, i % PER_PAGE, mItems.get(i).title, barcode);
+                barcode.recycle();
+            }
+            if (canvas != null) {
+                sheet.endPage();
+            }
+            Log.d(TAG, "#exported=", count);
+            return sheet.finish();
+        } catch (InterruptedException | ExecutionException | IOException e) {
+            Log.e(TAG, "error exporting barcodes", e);
+            return null;
+        } finally {
+            pool.shutdownNow();
+            sheet.close();
+        }
+    }
+
+    @Override
+    protected void onPostExecute(final ArrayList<File> files) {
+        mDone = true;
+        mFiles = files;
+        deliver();
+    }
+
+    private void deliver() {
+        if (mCallback == null) {
+            return;
+        }
+        if (mFiles != null && !mFiles.isEmpty()) {
+            mCallback.onExportDone(mFiles, mType);
+        } else {
+            mCallback.onExportFailed();
+        }
+    }
+
+    @Override
+    protected void onCancelled() {
+        mCallback = null;
+    }
+
+    /**
+     * Encode a single barcode on a worker thread.
+     */
+    private static final class EncodeTask implements Callable<Bitmap> {
+        private final String mContent;
+
+        EncodeTask(final String content) {
+            mContent = content;
+        }
+
+        @Override
+        public Bitmap call() throws Exception {
+            // bypass BarcodeCache, exported barcodes would evict the ones on screen
+            return RENDERER.get().encode(mContent, ErrorCorrectionLevel.L);
+        }
+    }
+
+    /**
+     * Draw barcodes into a grid of cells.
+     */
+    private static final class Painter {
+        private final int mScale;
+        private final Paint mBarcodePaint = new Paint();
+        private final TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        private final Rect mDst = new Rect();
+
+        Painter(final int scale) {
+            mScale = scale;
+            // keep modules sharp
+            mBarcodePaint.setFilterBitmap(false);
+            mBarcodePaint.setAntiAlias(false);
+            mTextPaint.setColor(Color.BLACK);
+            mTextPaint.setTextSize(TEXT_SIZE * scale);
+            mTextPaint.setTextAlign(Paint.Align.CENTER);
+        }
+
+        void drawCell(final Canvas canvas, final int cell, final String title, final Bitmap barcode) {
+            final int cellWidth = PAGE_WIDTH * mScale / COLUMNS;
+            final int cellHeight = PAGE_HEIGHT * mScale / ROWS;
+            final int left = (cell % COLUMNS) * cellWidth;
+            final int top = (cell / COLUMNS) * cellHeight;
+            final int margin = MARGIN * mScale;
+            final int textHeight = TEXT_SIZE * mScale * 2;
+
+            final int available = Math.min(cellWidth, cellHeight - textHeight) - 2 * margin;
+            final int modules = barcode.getWidth();
+            final int size = available >= modules ? available / modules * modules : available;
+            final int x = left + (cellWidth - size) / 2;
+            final int y = top + margin;
+            mDst.set(x, y, x + size, y + size);
+            canvas.drawBitmap(barcode, null, mDst, mBarcodePaint);
+
+            final CharSequence text = TextUtils.ellipsize(title, mTextPaint, cellWidth - 2 * margin,
+                    TextUtils.TruncateAt.END);
+            canvas.drawText(text, 0, text.length(), left + cellWidth / 2,
+                    y + size + textHeight * 3 / 4, mTextPaint);
+        }
+    }
+
+    /**
+     * Output of the export, one page at a time.
+     */
+    private abstract static class Sheet {
+
+        /**
+         * @return pixels per PDF point
+         */
+        abstract int getScale();
+
+        abstract Canvas beginPage();
+
+        abstract void endPage() throws IOException;
+
+        /**
+         * @return all written files
+         */
+        abstract ArrayList<File> finish() throws IOException;
+
+        /**
+         * Release resources, called after {@link #finish()} or on error.
+         */
+        abstract void close();
+    }
+
+    /**
+     * Multi-page PDF, needs KitKat.
+     */
+    private static final class PdfSheet extends Sheet {
+        private final File mFile;
+        private final PdfDocument mDocument = new PdfDocument();
+        private PdfDocument.Page mPage;
+
+        PdfSheet(final File file) {
+            mFile = file;
+        }
+
+        @Override
+        int getScale() {
+            return 1;
+        }
+
+        @Override
+        Canvas beginPage() {
+            final int number = mDocument.getPages().size() + 1;
+            mPage = mDocument.startPage(
+                    new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, number).create());
+            return mPage.getCanvas();
+        }
+
+        @Override
+        void endPage() {
+            mDocument.finishPage(mPage);
+            mPage = null;
+        }
+
+        @Override
+        ArrayList<File> finish() throws IOException {
+            final FileOutputStream out = new FileOutputStream(mFile);
+            try {
+                mDocument.writeTo(out);
+            } finally {
+                out.close();
+            }
+            final ArrayList<File> files = new ArrayList<>(1);
+            files.add(mFile);
+            return files;
+        }
+
+        @Override
+        void close() {
+            mDocument.close();
+        }
+    }
+
+    /**
+     * One PNG file per page, the page's bitmap is reused.
+     */
+    private static final class PngSheet extends Sheet {
+        private final File mDir;
+        private final ArrayList<File> mFiles = new ArrayList<>();
+        private Bitmap mPage;
+
+        PngSheet(final File dir) {
+            mDir = dir;
+        }
+
+        @Override
+        int getScale() {
+            return PNG_SCALE;
+        }
+
+        @Override
+        Canvas beginPage() {
+            if (mPage == null) {
+                mPage = Bitmap.createBitmap(PAGE_WIDTH * PNG_SCALE, PAGE_HEIGHT * PNG_SCALE,
+                        Bitmap.Config.RGB_565);
+            }
+            mPage.eraseColor(Color.WHITE);
+            return new Canvas(mPage);
+        }
+
+        @Override
+        void endPage() throws IOException {
+            final File f = new File(mDir, "wifi-" + (mFiles.size() + 1) + ".png");
+            final FileOutputStream out = new FileOutputStream(f);
+            try {
+                if (!mPage.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                    throw new IOException("error writing " + f);
+                }
+            } finally {
+                out.close();
+            }
+            mFiles.add(f);
+        }
+
+        @Override
+        ArrayList<File> finish() {
+            return mFiles;
+        }
+
+        @Override
+        void close() {
+            if (mPage != null) {
+                mPage.recycle();
+                mPage = null;
+            }
+        }
+    }
+}
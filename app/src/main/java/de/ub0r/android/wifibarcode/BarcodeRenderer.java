@@ -0,0 +1,60 @@
+package de.ub0r.android.wifibarcode;
+
+import android.graphics.Bitmap;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import de.ub0r.android.wifibarcode.core.BarcodePixels;
+import de.ub0r.android.wifibarcode.core.Metrics;
+
+/**
+ * Render a {@link BitMatrix} into a {@link Bitmap}.
+ * Not thread safe.
+ */
+final class BarcodeRenderer {
+
+    private final BarcodePixels mPixels = new BarcodePixels();
+    private final Map<EncodeHintType, Object> mHints = new EnumMap<>(EncodeHintType.class);
+
+    /**
+     * Encode content as QR code with one pixel per module.
+     *
+     * @param content barcode's content
+     * @param level   {@link ErrorCorrectionLevel}
+     * @return {@link Bitmap}
+     */
+    Bitmap encode(final String content, final ErrorCorrectionLevel level) throws WriterException {
+        final long start = Metrics.start();
+        mHints.put(EncodeHintType.ERROR_CORRECTION, level);
+        try {
+            // encode at module resolution, BarcodeDrawable scales it up
+            return render(new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, 0, 0, mHints));
+        } finally {
+            // time failed attempts too, e.g. content too large for a single barcode
+            Metrics.stop(Metrics.BARCODE_ENCODE, start);
+        }
+    }
+
+    /**
+     * Render the barcode.
+     *
+     * @param matrix {@link BitMatrix}
+     * @return {@link Bitmap}
+     */
+    Bitmap render(final BitMatrix matrix) {
+        final int width = matrix.getWidth();
+        final int height = matrix.getHeight();
+        final int[] pixels = mPixels.render(matrix);
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        return bitmap;
+    }
+}
@@ -0,0 +1,195 @@
+package de.ub0r.android.wifibarcode;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.ub0r.android.logg0r.Log;
+import de.ub0r.android.wifibarcode.core.MultiFrame;
+import de.ub0r.android.wifibarcode.core.WifiPayload;
+
+/**
+ * Encode barcodes on a worker thread.
+ * Requests within the debounce window collapse into a single encode, only the result of the
+ * latest request is delivered. Call from the UI thread only, callbacks run on the UI thread.
+ */
+final class BarcodeScheduler {
+
+    private static final String TAG = "BarcodeScheduler";
+
+    /**
+     * Delay for requests triggered by typing, in milliseconds.
+     */
+    static final long DEBOUNCE_DELAY = 300;
+
+    /**
+     * Receive encoded barcodes.
+     */
+    interface Callback {
+
+        /**
+         * Barcode is ready.
+         *
+         * @param content barcode's content
+         * @param barcode barcode with one pixel per module
+         * @param frames  1, or number of frames if the barcode shows the first frame only
+         */
+        void onBarcodeReady(String content, Bitmap barcode, int frames);
+    }
+
+    /**
+     * Result of {@link #encode(String)}.
+     */
+    private static final class Encoded {
+        final Bitmap barcode;
+        final int frames;
+
+        Encoded(final Bitmap barcode, final int frames) {
+            this.barcode = barcode;
+            this.frames = frames;
+        }
+    }
+
+    /**
+     * ZXing's classes are loaded once per process.
+     */
+    private static boolean sPrewarmed = false;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Callback mCallback;
+
+    /**
+     * Incremented with every request, results of older generations are dropped.
+     */
+    private int mGeneration = 0;
+    private String mPendingContent;
+    private Future<?> mRunning;
+
+    private final Runnable mSubmit = new Runnable() {
+        @Override
+        public void run() {
+            submit();
+        }
+    };
+
+    BarcodeScheduler(final Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Request a barcode, replacing any pending request.
+     *
+     * @param content barcode's content
+     * @param delay   delay in milliseconds, 0 to encode right away
+     */
+    void schedule(final String content, final long delay) {
+        mHandler.removeCallbacks(mSubmit);
+        ++mGeneration;
+        mPendingContent = content;
+        if (delay <= 0) {
+            submit();
+        } else {
+            mHandler.postDelayed(mSubmit, delay);
+        }
+    }
+
+    /**
+     * Load ZXing's classes and tables on the worker thread, the first real request does not pay
+     * for it. Requests scheduled meanwhile queue up behind it.
+     */
+    void prewarm() {
+        if (sPrewarmed || mExecutor.isShutdown()) {
+            return;
+        }
+        sPrewarmed = true;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new QRCodeWriter().encode(WifiPayload.build(WifiPayload.TYPE_WPA, "", ""),
+                            BarcodeFormat.QR_CODE, 0, 0);
+                } catch (WriterException e) {
+                    Log.w(TAG, "error loading zxing", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop all pending requests.
+     */
+    void cancel() {
+        mHandler.removeCallbacks(mSubmit);
+        ++mGeneration;
+        if (mRunning != null) {
+            mRunning.cancel(false);
+            mRunning = null;
+        }
+    }
+
+    /**
+     * Drop all pending requests and stop the worker thread.
+     */
+    void shutdown() {
+        cancel();
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Encode content, fall back to the first frame if it does not fit a single barcode.
+     * The viewer cycles through all frames.
+     */
+    private static Encoded encode(final String content) throws WriterException {
+        try {
+            return new Encoded(BarcodeCache.getInstance().get(content, ErrorCorrectionLevel.L), 1);
+        } catch (WriterException e) {
+            final List<String> frames = MultiFrame.split(content, ViewerActivity.FRAME_LENGTH);
+            if (frames == null) {
+                throw e;
+            }
+            Log.d(TAG, "content too large, showing first of ", frames.size(), " frames");
+            return new Encoded(BarcodeCache.getInstance().get(frames.get(0), ErrorCorrectionLevel.L),
+                    frames.size());
+        }
+    }
+
+    private void submit() {
+        if (mRunning != null) {
+            mRunning.cancel(false);
+        }
+        final int generation = mGeneration;
+        final String content = mPendingContent;
+        mRunning = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Encoded encoded;
+                try {
+                    encoded = encode(content);
+                } catch (WriterException e) {
+                    Log.e(TAG, "error generating qr code", e);
+                    return;
+                }
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            mRunning = null;
+                            mCallback.onBarcodeReady(content, encoded.barcode, encoded.frames);
+                        }
+                    }
+                });
+            }
+        });
+    }
+}
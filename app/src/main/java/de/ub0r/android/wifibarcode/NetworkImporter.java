@@ -0,0 +1,295 @@
+package de.ub0r.android.wifibarcode;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiEnterpriseConfig;
+import android.net.wifi.WifiManager;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.ub0r.android.logg0r.Log;
+import de.ub0r.android.wifibarcode.core.WifiPayload;
+import de.ub0r.android.wifibarcode.core.WifiStrings;
+
+/**
+ * Add many networks with a single {@link WifiManager#saveConfiguration()}.
+ * Saving rewrites the whole supplicant config, so all networks are added first and saved once.
+ * If the import is cancelled or saving fails, all networks added so far are removed again.
+ * Survives configuration changes, see {@link #setCallback(Callback)}.
+ */
+final class NetworkImporter extends AsyncTask<Void, Integer, Boolean> {
+
+    private static final String TAG = "NetworkImporter";
+
+    /**
+     * Receive progress and results from {@link NetworkImporter}, called on the UI thread.
+     */
+    interface Callback {
+
+        /**
+         * A network was processed.
+         *
+         * @param added  networks added so far
+         * @param failed networks failed so far
+         */
+        void onImportProgress(int added, int failed);
+
+        /**
+         * Import finished.
+         *
+         * @param added  networks added
+         * @param failed networks failed
+         * @param saved  true, if the configuration was saved
+         */
+        void onImportDone(int added, int failed, boolean saved);
+    }
+
+    private final WifiManager mWifiManager;
+    private final List<WifiPayload> mPayloads;
+    private Callback mCallback;
+    private volatile int mAdded = 0;
+    private volatile int mFailed = 0;
+    private boolean mDone = false;
+    private boolean mSaved = false;
+
+    NetworkImporter(final Context context, final List<WifiPayload> payloads, final Callback callback) {
+        mWifiManager = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+        mPayloads = payloads;
+        mCallback = callback;
+    }
+
+    /**
+     * Attach a new callback, e.g. after the activity was recreated.
+     * Delivers the result right away if the import finished while no callback was attached.
+     *
+     * @param callback {@link Callback}, null to detach
+     */
+    void setCallback(final Callback callback) {
+        mCallback = callback;
+        if (callback != null && mDone) {
+            callback.onImportDone(mAdded, mFailed, mSaved);
+        }
+    }
+
+    /**
+     * @return number of networks to import
+     */
+    int getTotal() {
+        return mPayloads.size();
+    }
+
+    /**
+     * @return networks added so far
+     */
+    int getAdded() {
+        return mAdded;
+    }
+
+    /**
+     * @return networks failed so far
+     */
+    int getFailed() {
+        return mFailed;
+    }
+
+    /**
+     * Create a configuration for a network.
+     *
+     * @param type     network type, one of WifiPayload.TYPE_*
+     * @param ssid     SSID
+     * @param password password, may be null
+     * @param hidden   true for hidden networks
+     * @return {@link WifiConfiguration} or null if the network type is not supported
+     */
+    static WifiConfiguration createConfiguration(final int type, final String ssid, final String password,
+                                                 final boolean hidden) {
+        WifiConfiguration wc = new WifiConfiguration();
+        wc.allowedAuthAlgorithms.clear();
+        wc.allowedGroupCiphers.clear();
+        wc.allowedKeyManagement.clear();
+        wc.allowedPairwiseCiphers.clear();
+        wc.allowedProtocols.clear();
+
+        wc.SSID = WifiStrings.convertToQuotedString(ssid);
+        wc.hiddenSSID = hidden;
+
+        final String p = password == null ? "" : password;
+        switch (type) {
+            case WifiPayload.TYPE_WEP:
+                wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                wc.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.OPEN);
+                wc.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.SHARED);
+                int length = p.length();
+                // WEP-40, WEP-104, and 256-bit WEP (WEP-232?)
+                if ((length == 10 || length == 26 || length == 58) && p.matches("[0-9A-Fa-f]*")) {
+                    wc.wepKeys[0] = p;
+                } else {
+                    wc.wepKeys[0] = '"' + p + '"';
+                }
+                break;
+            case WifiPayload.TYPE_WPA:
+            case WifiPayload.TYPE_SAE:
+                // SAE needs a newer framework, most SAE networks run in transition mode
+                wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
+                if (p.matches("[0-9A-Fa-f]{64}")) {
+                    wc.preSharedKey = p;
+                } else {
+                    wc.preSharedKey = '"' + p + '"';
+                }
+                break;
+            case WifiPayload.TYPE_OPEN:
+                wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                break;
+            default:
+                return null;
+        }
+        return wc;
+    }
+
+    /**
+     * Create a configuration for a network.
+     *
+     * @param payload {@link WifiPayload}
+     * @return {@link WifiConfiguration} or null if the network is not supported
+     */
+    static WifiConfiguration createConfiguration(final WifiPayload payload) {
+        if (TextUtils.isEmpty(payload.ssid)) {
+            return null;
+        }
+        if (payload.type == WifiPayload.TYPE_WPA2_EAP) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                return null;
+            }
+            return createEnterpriseConfiguration(payload);
+        }
+        return createConfiguration(payload.type, payload.ssid, payload.password, payload.hidden);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static WifiConfiguration createEnterpriseConfiguration(final WifiPayload payload) {
+        final WifiEnterpriseConfig ec = new WifiEnterpriseConfig();
+        final int eapMethod = getEapMethod(payload.eapMethod);
+        final int phase2Method = getPhase2Method(payload.phase2Method);
+        if (eapMethod < 0 || phase2Method < 0) {
+            return null;
+        }
+        ec.setEapMethod(eapMethod);
+        ec.setPhase2Method(phase2Method);
+        ec.setIdentity(payload.identity);
+        ec.setAnonymousIdentity(payload.anonymousIdentity);
+        ec.setPassword(payload.password);
+
+        final WifiConfiguration wc = new WifiConfiguration();
+        wc.SSID = WifiStrings.convertToQuotedString(payload.ssid);
+        wc.hiddenSSID = payload.hidden;
+        wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_EAP);
+        wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.IEEE8021X);
+        wc.enterpriseConfig = ec;
+        return wc;
+    }
+
+    /**
+     * @return WifiEnterpriseConfig.Eap.*, -1 if unknown
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static int getEapMethod(final String name) {
+        if (name == null || "PEAP".equalsIgnoreCase(name)) {
+            return WifiEnterpriseConfig.Eap.PEAP;
+        } else if ("TTLS".equalsIgnoreCase(name)) {
+            return WifiEnterpriseConfig.Eap.TTLS;
+        } else if ("PWD".equalsIgnoreCase(name)) {
+            return WifiEnterpriseConfig.Eap.PWD;
+        }
+        return -1;
+    }
+
+    /**
+     * @return WifiEnterpriseConfig.Phase2.*, -1 if unknown
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static int getPhase2Method(final String name) {
+        if (name == null) {
+            return WifiEnterpriseConfig.Phase2.NONE;
+        } else if ("MSCHAPV2".equalsIgnoreCase(name)) {
+            return WifiEnterpriseConfig.Phase2.MSCHAPV2;
+        } else if ("MSCHAP".equalsIgnoreCase(name)) {
+            return WifiEnterpriseConfig.Phase2.MSCHAP;
+        } else if ("PAP".equalsIgnoreCase(name)) {
+            return WifiEnterpriseConfig.Phase2.PAP;
+        } else if ("GTC".equalsIgnoreCase(name)) {
+            return WifiEnterpriseConfig.Phase2.GTC;
+        }
+        return -1;
+    }
+
+    @Override
+    protected Boolean doInBackground(final Void... params) {
+        final ArrayList<Integer> netIds = new ArrayList<>(mPayloads.size());
+        for (WifiPayload payload : mPayloads) {
+            if (isCancelled()) {
+                break;
+            }
+            final WifiConfiguration wc = createConfiguration(payload);
+            final int netId = wc == null ? -1 : mWifiManager.addNetwork(wc);
+            if (netId < 0) {
+                Log.w(TAG, "error adding network: ", payload.ssid);
+                ++mFailed;
+            } else {
+                netIds.add(netId);
+                ++mAdded;
+            }
+            publishProgress(mAdded, mFailed);
+        }
+        if (isCancelled()) {
+            // all or nothing, never save a partial set
+            Log.w(TAG, "import cancelled");
+            removeNetworks(netIds);
+            return false;
+        }
+        if (netIds.isEmpty()) {
+            return false;
+        }
+        if (!mWifiManager.saveConfiguration()) {
+            Log.e(TAG, "error saving configuration");
+            removeNetworks(netIds);
+            return false;
+        }
+        for (int netId : netIds) {
+            mWifiManager.enableNetwork(netId, false);
+        }
+        Log.d(TAG, "#added=", mAdded, " #failed=", mFailed);
+        return true;
+    }
+
+    private void removeNetworks(final List<Integer> netIds) {
+        for (int netId : netIds) {
+            mWifiManager.removeNetwork(netId);
+        }
+    }
+
+    @Override
+    protected void onProgressUpdate(final Integer... values) {
+        if (mCallback != null) {
+            mCallback.onImportProgress(values[0], values[1]);
+        }
+    }
+
+    @Override
+    protected void onPostExecute(final Boolean saved) {
+        mDone = true;
+        mSaved = saved;
+        if (mCallback != null) {
+            mCallback.onImportDone(mAdded, mFailed, saved);
+        }
+    }
+
+    @Override
+    protected void onCancelled() {
+        mCallback = null;
+    }
+}
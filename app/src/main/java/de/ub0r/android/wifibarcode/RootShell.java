@@ -0,0 +1,256 @@
+package de.ub0r.android.wifibarcode;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.ub0r.android.logg0r.Log;
+import de.ub0r.android.wifibarcode.core.Metrics;
+
+/**
+ * Long-lived root shell. A single su process is kept open and commands are run one after the
+ * other. Each command's stdout is terminated by a sentinel line carrying the exit code.
+ * Does blocking I/O, do not call from the UI thread. Only {@link #closeInstance()} never blocks.
+ */
+final class RootShell {
+
+    private static final String TAG = "RootShell";
+
+    private static RootShell sInstance;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Process mProcess;
+    private final OutputStream mStdin;
+    private final InputStream mStdout;
+    private final byte[] mMarker;
+    private volatile boolean mAlive = true;
+
+    private RootShell() throws IOException {
+        mProcess = Runtime.getRuntime().exec("su");
+        mStdin = mProcess.getOutputStream();
+        mStdout = new BufferedInputStream(mProcess.getInputStream());
+        mMarker = ("\n__rootshell_" + Long.toHexString(new Random().nextLong()) + "__ ").getBytes("US-ASCII");
+    }
+
+    /**
+     * Get the shared root shell, start su if needed.
+     *
+     * @return {@link RootShell} or null if su can not be started
+     */
+    static synchronized RootShell getInstance() {
+        if (sInstance == null || !sInstance.mAlive) {
+            final long start = Metrics.start();
+            try {
+                sInstance = new RootShell();
+            } catch (IOException e) {
+                Log.e(TAG, "unable to start su", e);
+                Metrics.increment(Metrics.ROOT_FAILURES);
+                sInstance = null;
+            }
+            Metrics.stop(Metrics.ROOT_OPEN, start);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Stop the shared root shell. Does not wait for a running command, safe on the UI thread.
+     */
+    static synchronized void closeInstance() {
+        if (sInstance != null) {
+            sInstance.close();
+            sInstance = null;
+        }
+    }
+
+    /**
+     * @return false, if su was denied or the shell died
+     */
+    boolean isAlive() {
+        return mAlive;
+    }
+
+    /**
+     * Run a command and discard its output.
+     *
+     * @param command command
+     * @return exit code, -1 if the shell died
+     */
+    int run(final String command) {
+        Log.i(TAG, "running command as root: ", command);
+        CommandOutput out = null;
+        try {
+            out = open(command);
+            out.drain();
+            Log.i(TAG, "done: ", out.getExitCode());
+            if (out.getExitCode() != 0) {
+                Metrics.increment(Metrics.ROOT_FAILURES);
+            }
+            return out.getExitCode();
+        } catch (IOException e) {
+            Log.e(TAG, "run", e);
+            return -1;
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Run a command and stream its stdout. The shell is locked until the returned stream is
+     * closed.
+     *
+     * @param command command
+     * @return {@link CommandOutput}
+     */
+    CommandOutput open(final String command) throws IOException {
+        mLock.lock();
+        try {
+            if (!mAlive) {
+                throw new IOException("root shell is dead");
+            }
+            final String marker = new String(mMarker, 1, mMarker.length - 2, "US-ASCII");
+            mStdin.write(("{\n" + command + "\n} 2>/dev/null\necho \"\n" + marker + " $?\"\n")
+                    .getBytes("UTF-8"));
+            mStdin.flush();
+            return new CommandOutput();
+        } catch (IOException e) {
+            Metrics.increment(Metrics.ROOT_FAILURES);
+            kill();
+            mLock.unlock();
+            throw e;
+        }
+    }
+
+    private void close() {
+        if (!mLock.tryLock()) {
+            // a command is running, killing the shell ends its output and releases the lock
+            kill();
+            return;
+        }
+        try {
+            if (mAlive) {
+                mStdin.write("exit\n".getBytes("US-ASCII"));
+                mStdin.flush();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "error closing shell", e);
+        } finally {
+            kill();
+            mLock.unlock();
+        }
+    }
+
+    private void kill() {
+        mAlive = false;
+        mProcess.destroy();
+    }
+
+    /**
+     * Stdout of a single command, ends at the sentinel line.
+     */
+    final class CommandOutput extends InputStream {
+
+        private final long mStart = Metrics.start();
+        private int mExitCode = -1;
+        private boolean mEof = false;
+        private boolean mClosed = false;
+
+        /**
+         * @return exit code of the command, valid after the stream hit EOF
+         */
+        int getExitCode() {
+            return mExitCode;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (mEof) {
+                return -1;
+            }
+            final int b = mStdout.read();
+            if (b < 0) {
+                mEof = true;
+                kill();
+                throw new IOException("root shell died");
+            }
+            if (b == mMarker[0] && matchMarker()) {
+                mEof = true;
+                return -1;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int n = 0;
+            while (n < length) {
+                final int b = read();
+                if (b < 0) {
+                    break;
+                }
+                buffer[offset + n] = (byte) b;
+                ++n;
+                if (mStdout.available() == 0) {
+                    // do not block while bytes are already delivered
+                    break;
+                }
+            }
+            return n == 0 ? -1 : n;
+        }
+
+        /**
+         * Check whether the sentinel follows the already consumed newline and read the exit
+         * code if so.
+         */
+        private boolean matchMarker() throws IOException {
+            mStdout.mark(mMarker.length);
+            for (int i = 1; i < mMarker.length; i++) {
+                if (mStdout.read() != mMarker[i]) {
+                    mStdout.reset();
+                    return false;
+                }
+            }
+            int code = 0;
+            int b;
+            while ((b = mStdout.read()) >= 0 && b != '\n') {
+                if (b >= '0' && b <= '9') {
+                    code = code * 10 + (b - '0');
+                }
+            }
+            mExitCode = code;
+            return true;
+        }
+
+        /**
+         * Skip remaining output.
+         */
+        void drain() throws IOException {
+            while (read() >= 0) {
+                // nothing to do
+            }
+        }
+
+        @Override
+        public void close() {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            try {
+                drain();
+            } catch (IOException e) {
+                Log.w(TAG, "error draining output", e);
+            } finally {
+                mLock.unlock();
+                Metrics.stop(Metrics.ROOT_COMMAND, mStart);
+            }
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package de.ub0r.android.wifibarcode;
+
+import android.content.Context;
+import android.os.Build;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import de.ub0r.android.logg0r.Log;
+import de.ub0r.android.wifibarcode.core.Metrics;
+import de.ub0r.android.wifibarcode.core.PlainConfigParser;
+import de.ub0r.android.wifibarcode.core.SsidSecretIndex;
+import de.ub0r.android.wifibarcode.core.XmlConfigParser;
+import de.ub0r.android.wifibarcode.core.XmlConfigScanner;
+
+/**
+ * Read wifi secrets from the system's secrets files with root.
+ * Does blocking I/O, do not call from the UI thread.
+ */
+final class SecretsReader {
+
+    private static final String TAG = "SecretsReader";
+
+    private static final String SECRETS_FILE_PLAIN = "wpa_supplicant.conf";
+    private static final String SECRETS_FILE_XML = "WifiConfigStore.xml";
+    private static final String[] SECRET_FILES = new String[]{SECRETS_FILE_XML, SECRETS_FILE_PLAIN};
+
+    private static final String STAT_COMMAND = "stat -c '%n %i %s %Y' /data/misc/wifi/"
+            + SECRETS_FILE_XML + " /data/misc/wifi/" + SECRETS_FILE_PLAIN;
+
+    /**
+     * Signature of the secrets files {@link #sSecrets} was read from.
+     */
+    private static String sSignature;
+    private static SsidSecretIndex sSecrets;
+
+    private final Context mContext;
+    private final SecretsVault mVault;
+
+    /**
+     * String resource describing the last error, 0 if none.
+     */
+    private int mError = 0;
+
+    SecretsReader(final Context context) {
+        mContext = context.getApplicationContext();
+        mVault = new SecretsVault(mContext);
+    }
+
+    /**
+     * @return string resource describing the last error, 0 if none
+     */
+    int getError() {
+        return mError;
+    }
+
+    /**
+     * Remove plain text copies of the secrets files older versions left in the cache dir.
+     */
+    void flushWifiPasswords() {
+        for (String name : SECRET_FILES) {
+            deleteCacheFile(name);
+        }
+    }
+
+    /**
+     * Read all wifi secrets with a single pass over the secrets file.
+     * The secrets file is only read if it changed since the last call. The first call of a
+     * process serves secrets from {@link SecretsVault} without root, if possible.
+     *
+     * @return {@link SsidSecretIndex} or null on error, see {@link #getError()}
+     */
+    SsidSecretIndex readSecrets() {
+        mError = 0;
+        synchronized (SecretsReader.class) {
+            if (sSecrets == null) {
+                final SecretsVault.Snapshot snapshot = mVault.load();
+                if (snapshot != null) {
+                    Log.d(TAG, "secrets from vault");
+                    Metrics.increment(Metrics.SECRETS_VAULT_HITS);
+                    sSignature = snapshot.signature;
+                    sSecrets = snapshot.secrets;
+                    return sSecrets;
+                }
+            }
+        }
+
+        final RootShell shell = RootShell.getInstance();
+        if (shell == null) {
+            mError = R.string.error_need_root;
+            return null;
+        }
+        final String signature = readSignature(shell);
+        if (!shell.isAlive()) {
+            // su denied or died, do not ask again with a new shell
+            mError = R.string.error_need_root;
+            return null;
+        }
+        synchronized (SecretsReader.class) {
+            if (signature != null && signature.equals(sSignature)) {
+                Log.d(TAG, "secrets unchanged");
+                Metrics.increment(Metrics.SECRETS_UNCHANGED);
+                return sSecrets;
+            }
+        }
+
+        final long start = Metrics.start();
+        final SsidSecretIndex index = streamSecrets(shell);
+        Metrics.stop(Metrics.SECRETS_READ, start);
+        if (index != null) {
+            synchronized (SecretsReader.class) {
+                sSignature = signature;
+                sSecrets = index;
+            }
+            if (signature != null) {
+                mVault.save(signature, index);
+            } else {
+                // changes can't be detected
+                mVault.clear();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Stat the secrets files with a single root command.
+     *
+     * @return name, inode, size and mtime of all existing secrets files, null if unknown
+     */
+    private static String readSignature(final RootShell shell) {
+        final RootShell.CommandOutput out;
+        try {
+            out = shell.open(STAT_COMMAND);
+        } catch (IOException e) {
+            Log.e(TAG, "error starting root shell", e);
+            return null;
+        }
+        try {
+            final StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = readLine(out)).length() > 0) {
+                sb.append(line).append('\n');
+            }
+            return sb.length() == 0 ? null : sb.toString();
+        } catch (IOException e) {
+            Log.e(TAG, "error reading stat", e);
+            return null;
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Pipe the secrets file from the root shell straight into the parser.
+     * The shell prints the file's format in the first line, followed by the file itself.
+     *
+     * @param shell {@link RootShell} the signature was read with
+     */
+    private SsidSecretIndex streamSecrets(final RootShell shell) {
+        final String command = String.format("if [ -f /data/misc/wifi/%1$s ]; then\n"
+                        + "echo xml; cat /data/misc/wifi/%1$s\n"
+                        + "elif [ -f /data/misc/wifi/%2$s ]; then\n"
+                        + "echo plain; cat /data/misc/wifi/%2$s\n"
+                        + "fi",
+                SECRETS_FILE_XML, SECRETS_FILE_PLAIN);
+        Log.i(TAG, "streaming secrets as root");
+        final RootShell.CommandOutput out;
+        try {
+            out = shell.open(command);
+        } catch (IOException e) {
+            Log.e(TAG, "error starting root shell", e);
+            mError = R.string.error_need_root;
+            return null;
+        }
+
+        SsidSecretIndex index = null;
+        try {
+            final String format = readLine(out);
+            if ("xml".equals(format)) {
+                index = readXmlConfig(out);
+            } else if ("plain".equals(format)) {
+                index = parsePlainConfig(out);
+            } else {
+                Log.e(TAG, "no secrets file found");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "error reading secrets", e);
+            mError = R.string.error_need_root;
+            return null;
+        } finally {
+            out.close();
+        }
+        if (index == null) {
+            mError = R.string.error_read_file;
+        }
+        return index;
+    }
+
+    private static String readLine(final InputStream in) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+    private void deleteCacheFile(final String name) {
+        final File f = getCacheFile(name);
+        if (f.exists() && !f.delete()) {
+            Log.e(TAG, "error deleting file: ", f);
+        }
+    }
+
+    private static File getRealCacheDir(final Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return context.getExternalCacheDir();
+        } else {
+            return context.getCacheDir();
+        }
+    }
+
+    private File getCacheFile(final String name) {
+        return new File(getRealCacheDir(mContext), name);
+    }
+
+    private SsidSecretIndex parsePlainConfig(final InputStream in) {
+        final long start = Metrics.start();
+        try {
+            final SsidSecretIndex index = new PlainConfigParser().parse(in);
+            Log.d(TAG, "#plain networks=", index.size());
+            return index;
+        } catch (IOException e) {
+            Log.e(TAG, "error reading file", e);
+            return null;
+        } finally {
+            Metrics.stop(Metrics.SECRETS_PARSE_PLAIN, start);
+        }
+    }
+
+    /**
+     * Buffer WifiConfigStore.xml and scan it without a full XML parser.
+     * Falls back to the pull parser if the scanner does not understand the file.
+     */
+    private SsidSecretIndex readXmlConfig(final InputStream in) throws IOException {
+        final SecretsBuffer buffer = new SecretsBuffer();
+        final byte[] chunk = new byte[8192];
+        try {
+            int read;
+            while ((read = in.read(chunk)) >= 0) {
+                buffer.write(chunk, 0, read);
+            }
+            final SsidSecretIndex index = scanXmlConfig(buffer.asByteBuffer());
+            if (index != null) {
+                return index;
+            }
+            return parseXmlConfig(buffer.asInputStream());
+        } finally {
+            Arrays.fill(chunk, (byte) 0);
+            buffer.wipe();
+        }
+    }
+
+    /**
+     * @return {@link SsidSecretIndex} or null if the file needs the pull parser
+     */
+    private SsidSecretIndex scanXmlConfig(final ByteBuffer bytes) {
+        final long start = Metrics.start();
+        try {
+            final XmlConfigScanner scanner = new XmlConfigScanner();
+            final SsidSecretIndex index = scanner.scan(bytes);
+            if (index == null) {
+                Log.w(TAG, "falling back to xml parser: ", scanner.getError());
+            }
+            return index;
+        } finally {
+            Metrics.stop(Metrics.SECRETS_SCAN_XML, start);
+        }
+    }
+
+    private SsidSecretIndex parseXmlConfig(final InputStream in) {
+        final long start = Metrics.start();
+        try {
+            return new XmlConfigParser().parse(in);
+        } catch (IOException | XmlPullParserException e) {
+            Log.e(TAG, "error reading file", e);
+            return null;
+        } finally {
+            Metrics.stop(Metrics.SECRETS_PARSE_XML, start);
+        }
+    }
+
+    /**
+     * Growable buffer for the secrets file, exposes its bytes without copying them.
+     * Unlike streaming into the pull parser, this holds the whole file on the heap, about twice
+     * its size while growing. Arrays left behind by growing are zeroed right away.
+     */
+    private static final class SecretsBuffer extends ByteArrayOutputStream {
+
+        SecretsBuffer() {
+            super(32 * 1024);
+        }
+
+        @Override
+        public synchronized void write(final int b) {
+            final byte[] old = buf;
+            super.write(b);
+            wipeGrown(old);
+        }
+
+        @Override
+        public synchronized void write(final byte[] b, final int off, final int len) {
+            final byte[] old = buf;
+            super.write(b, off, len);
+            wipeGrown(old);
+        }
+
+        private void wipeGrown(final byte[] old) {
+            if (old != buf) {
+                Arrays.fill(old, (byte) 0);
+            }
+        }
+
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        InputStream asInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+
+        /**
+         * Overwrite the secrets in the current array.
+         */
+        void wipe() {
+            Arrays.fill(buf, (byte) 0);
+            reset();
+        }
+    }
+}
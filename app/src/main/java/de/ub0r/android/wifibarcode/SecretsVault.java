@@ -0,0 +1,241 @@
+package de.ub0r.android.wifibarcode;
+
+import android.content.Context;
+import android.os.Build;
+import android.security.KeyPairGeneratorSpec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.Calendar;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.x500.X500Principal;
+
+import de.ub0r.android.logg0r.Log;
+import de.ub0r.android.wifibarcode.core.SsidSecretIndex;
+
+/**
+ * Encrypted on-device copy of the parsed secrets, serves cold starts without root.
+ * The index is encrypted with a fresh AES key per write, which is wrapped by a RSA key held in
+ * the Android Keystore. Entries expire after {@link #TTL} and are replaced as soon as the
+ * secrets file's signature changes.
+ * Needs KitKat, does nothing on older devices.
+ */
+final class SecretsVault {
+
+    private static final String TAG = "SecretsVault";
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "secrets";
+    private static final String FILE_NAME = "secrets.bin";
+    private static final int VERSION = 1;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+
+    /**
+     * Max. age of the stored secrets in milliseconds.
+     */
+    static final long TTL = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Secrets read from the vault.
+     */
+    static final class Snapshot {
+        /**
+         * Signature of the secrets file the secrets were read from.
+         */
+        final String signature;
+        final SsidSecretIndex secrets;
+
+        Snapshot(final String signature, final SsidSecretIndex secrets) {
+            this.signature = signature;
+            this.secrets = secrets;
+        }
+    }
+
+    private final Context mContext;
+
+    SecretsVault(final Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * @return true, if the device supports the vault
+     */
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    private File getFile() {
+        return new File(mContext.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Load secrets.
+     *
+     * @return {@link Snapshot} or null if there are no valid secrets stored
+     */
+    Snapshot load() {
+        final File f = getFile();
+        if (!isSupported() || !f.exists()) {
+            return null;
+        }
+        try {
+            final byte[] wrappedKey;
+            final byte[] iv = new byte[IV_LENGTH];
+            final byte[] cipherText;
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+            try {
+                if (in.readInt() != VERSION) {
+                    Log.i(TAG, "unknown version");
+                    clear();
+                    return null;
+                }
+                wrappedKey = new byte[in.readUnsignedShort()];
+                in.readFully(wrappedKey);
+                in.readFully(iv);
+                final int length = in.readInt();
+                if (length < 0 || length > f.length()) {
+                    throw new IOException("invalid length: " + length);
+                }
+                cipherText = new byte[length];
+                in.readFully(cipherText);
+            } finally {
+                in.close();
+            }
+
+            final KeyStore.PrivateKeyEntry entry = getKeyEntry();
+            final Cipher rsa = Cipher.getInstance("RSA/ECB/PKCS1Padding");
+            rsa.init(Cipher.DECRYPT_MODE, entry.getPrivateKey());
+            final SecretKey key = new SecretKeySpec(rsa.doFinal(wrappedKey), "AES");
+            final Cipher aes = Cipher.getInstance("AES/GCM/NoPadding");
+            aes.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+            final DataInputStream payload = new DataInputStream(
+                    new ByteArrayInputStream(aes.doFinal(cipherText)));
+
+            final long age = System.currentTimeMillis() - payload.readLong();
+            if (age < 0 || age > TTL) {
+                Log.d(TAG, "secrets expired, age=", age);
+                clear();
+                return null;
+            }
+            final String signature = payload.readUTF();
+            return new Snapshot(signature, SsidSecretIndex.readFrom(payload));
+        } catch (IOException | GeneralSecurityException e) {
+            Log.e(TAG, "error loading secrets", e);
+            clear();
+            return null;
+        }
+    }
+
+    /**
+     * Store secrets, replacing any stored secrets.
+     *
+     * @param signature signature of the secrets file
+     * @param secrets   {@link SsidSecretIndex}
+     */
+    void save(final String signature, final SsidSecretIndex secrets) {
+        if (!isSupported()) {
+            return;
+        }
+        final File f = getFile();
+        final File tmp = new File(f.getPath() + ".tmp");
+        try {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final DataOutputStream payload = new DataOutputStream(buffer);
+            payload.writeLong(System.currentTimeMillis());
+            payload.writeUTF(signature);
+            secrets.writeTo(payload);
+            payload.flush();
+
+            final KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+            keyGenerator.init(128);
+            final SecretKey key = keyGenerator.generateKey();
+            final byte[] iv = new byte[IV_LENGTH];
+            new SecureRandom().nextBytes(iv);
+            final Cipher aes = Cipher.getInstance("AES/GCM/NoPadding");
+            aes.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+            final byte[] cipherText = aes.doFinal(buffer.toByteArray());
+
+            final Cipher rsa = Cipher.getInstance("RSA/ECB/PKCS1Padding");
+            rsa.init(Cipher.ENCRYPT_MODE, getKeyEntry().getCertificate().getPublicKey());
+            final byte[] wrappedKey = rsa.doFinal(key.getEncoded());
+
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(VERSION);
+                out.writeShort(wrappedKey.length);
+                out.write(wrappedKey);
+                out.write(iv);
+                out.writeInt(cipherText.length);
+                out.write(cipherText);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(f)) {
+                throw new IOException("error renaming " + tmp);
+            }
+            Log.d(TAG, "#secrets stored=", secrets.size());
+        } catch (IOException | GeneralSecurityException e) {
+            Log.e(TAG, "error storing secrets", e);
+            if (tmp.exists() && !tmp.delete()) {
+                Log.e(TAG, "error deleting file: ", tmp);
+            }
+        }
+    }
+
+    /**
+     * Remove stored secrets.
+     */
+    void clear() {
+        final File f = getFile();
+        if (f.exists() && !f.delete()) {
+            Log.e(TAG, "error deleting file: ", f);
+        }
+    }
+
+    /**
+     * Get the vault's key pair, create it on first use.
+     */
+    private KeyStore.PrivateKeyEntry getKeyEntry() throws GeneralSecurityException, IOException {
+        final KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        if (!keyStore.containsAlias(KEY_ALIAS)) {
+            final Calendar start = Calendar.getInstance();
+            final Calendar end = Calendar.getInstance();
+            end.add(Calendar.YEAR, 30);
+            final KeyPairGeneratorSpec spec = new KeyPairGeneratorSpec.Builder(mContext)
+                    .setAlias(KEY_ALIAS)
+                    .setSubject(new X500Principal("CN=" + KEY_ALIAS))
+                    .setSerialNumber(BigInteger.ONE)
+                    .setStartDate(start.getTime())
+                    .setEndDate(end.getTime())
+                    .build();
+            final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", KEYSTORE);
+            generator.initialize(spec);
+            generator.generateKeyPair();
+        }
+        final KeyStore.Entry entry = keyStore.getEntry(KEY_ALIAS, null);
+        if (!(entry instanceof KeyStore.PrivateKeyEntry)) {
+            throw new GeneralSecurityException("unexpected key entry: " + entry);
+        }
+        return (KeyStore.PrivateKeyEntry) entry;
+    }
+}
@@ -20,12 +20,21 @@ package de.ub0r.android.wifibarcode;
 
 import com.actionbarsherlock.app.SherlockActivity;
 import com.actionbarsherlock.view.MenuItem;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.widget.ImageView;
 
+import java.util.List;
+
+import de.ub0r.android.logg0r.Log;
+import de.ub0r.android.wifibarcode.core.MultiFrame;
+
 /**
  * Show a barcode in full screen.
  *
@@ -33,6 +42,39 @@ import android.widget.ImageView;
  */
 public final class ViewerActivity extends SherlockActivity {
 
+    /**
+     * Tag for log output.
+     */
+    private static final String TAG = "ViewerActivity";
+
+    /**
+     * Max. length of a frame's chunk, if the content does not fit a single barcode.
+     */
+    static final int FRAME_LENGTH = 500;
+
+    /**
+     * Time each frame is shown in milliseconds.
+     */
+    private static final long FRAME_DELAY = 800;
+
+    private final Handler mHandler = new Handler();
+
+    /**
+     * Rendered barcode, or all frames if the content does not fit a single barcode. Null until
+     * {@link FrameRenderer} is done.
+     */
+    private Bitmap[] mFrames;
+    private int mFrame = 0;
+    private FrameRenderer mFrameRenderer;
+
+    private final Runnable mNextFrame = new Runnable() {
+        @Override
+        public void run() {
+            showFrame((mFrame + 1) % mFrames.length);
+            mHandler.postDelayed(this, FRAME_DELAY);
+        }
+    };
+
     /**
      * {@inheritDoc}
      */
@@ -50,14 +92,101 @@ public final class ViewerActivity extends SherlockActivity {
     public void onResume() {
         super.onResume();
         final Intent i = getIntent();
-        Bitmap bitmap = i.getParcelableExtra(WifiBarcodeActivity.EXTRA_BARCODE);
-        if (bitmap == null) {
+        String content = i.getStringExtra(WifiBarcodeActivity.EXTRA_CONTENT);
+        if (content == null) {
             finish();
-        } else {
+            return;
+        }
+        String s = i.getStringExtra(WifiBarcodeActivity.EXTRA_TITLE);
+        getSupportActionBar().setSubtitle(s);
+        if (mFrames != null) {
+            showFrames();
+            return;
+        }
+        if (mFrameRenderer != null) {
+            return;
+        }
+        // encoding may take a while or wait for another encode, keep it off the UI thread
+        mFrameRenderer = new FrameRenderer();
+        mFrameRenderer.execute(content);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mHandler.removeCallbacks(mNextFrame);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mFrameRenderer != null) {
+            mFrameRenderer.cancel(false);
+            mFrameRenderer = null;
+        }
+    }
+
+    private void showFrames() {
+        mHandler.removeCallbacks(mNextFrame);
+        if (mFrames.length == 1) {
             ImageView iv = (ImageView) findViewById(R.id.barcode);
-            iv.setImageBitmap(bitmap);
-            String s = i.getStringExtra(WifiBarcodeActivity.EXTRA_TITLE);
-            getSupportActionBar().setSubtitle(s);
+            iv.setImageDrawable(new BarcodeDrawable(mFrames[0], -1));
+            return;
+        }
+        showFrame(mFrame);
+        mHandler.postDelayed(mNextFrame, FRAME_DELAY);
+    }
+
+    private void showFrame(final int frame) {
+        mFrame = frame;
+        ImageView iv = (ImageView) findViewById(R.id.barcode);
+        iv.setImageDrawable(new BarcodeDrawable(mFrames[frame], -1));
+        String s = getIntent().getStringExtra(WifiBarcodeActivity.EXTRA_TITLE);
+        getSupportActionBar().setSubtitle(getString(R.string.frame_subtitle, s, frame + 1, mFrames.length));
+    }
+
+    /**
+     * Render the content as a single barcode. If it does not fit, split it and render all frames
+     * before cycling through them.
+     */
+    private final class FrameRenderer extends AsyncTask<String, Void, Bitmap[]> {
+        @Override
+        protected Bitmap[] doInBackground(final String... params) {
+            final String content = params[0];
+            try {
+                return new Bitmap[]{BarcodeCache.getInstance().get(content, ErrorCorrectionLevel.L)};
+            } catch (WriterException e) {
+                Log.w(TAG, "content too large, splitting into frames", e);
+            }
+            final List<String> frames = MultiFrame.split(content, FRAME_LENGTH);
+            if (frames == null) {
+                Log.e(TAG, "content too large: ", content.length());
+                return null;
+            }
+            final Bitmap[] bitmaps = new Bitmap[frames.size()];
+            try {
+                for (int i = 0; i < bitmaps.length && !isCancelled(); i++) {
+                    bitmaps[i] = BarcodeCache.getInstance().get(frames.get(i), ErrorCorrectionLevel.L);
+                }
+            } catch (WriterException e) {
+                Log.e(TAG, "error generating qr code", e);
+                return null;
+            }
+            return bitmaps;
+        }
+
+        @Override
+        protected void onPostExecute(final Bitmap[] bitmaps) {
+            mFrameRenderer = null;
+            if (bitmaps == null) {
+                finish();
+                return;
+            }
+            mFrames = bitmaps;
+            mFrame = 0;
+            if (!isFinishing()) {
+                showFrames();
+            }
         }
     }
 
@@ -19,22 +19,26 @@
 package de.ub0r.android.wifibarcode;
 
 import android.app.AlertDialog.Builder;
+import android.app.ProgressDialog;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.Color;
 import android.net.Uri;
 import android.net.wifi.WifiConfiguration;
 import android.net.wifi.WifiManager;
-import android.os.Build;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.v4.content.FileProvider;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemSelectedListener;
 import android.widget.ArrayAdapter;
@@ -47,23 +51,18 @@ import android.widget.Toast;
 import com.actionbarsherlock.app.SherlockActivity;
 import com.actionbarsherlock.view.Menu;
 import com.actionbarsherlock.view.MenuItem;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.WriterException;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
 
-import org.xmlpull.v1.XmlPullParserException;
-
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 
 import de.ub0r.android.logg0r.Log;
+import de.ub0r.android.wifibarcode.core.Metrics;
+import de.ub0r.android.wifibarcode.core.MultiFrame;
+import de.ub0r.android.wifibarcode.core.PackedPayload;
+import de.ub0r.android.wifibarcode.core.SsidSecretIndex;
+import de.ub0r.android.wifibarcode.core.WifiPayload;
+import de.ub0r.android.wifibarcode.core.WifiStrings;
 
 /**
  * Main {@link SherlockActivity} showing wifi configuration and barcodes.
@@ -71,7 +70,8 @@ import de.ub0r.android.logg0r.Log;
  * @author flx
  */
 public final class WifiBarcodeActivity extends SherlockActivity implements
-        OnClickListener {
+        OnClickListener, WifiLoader.Callback, BarcodeScheduler.Callback, BarcodeExporter.Callback,
+        NetworkImporter.Callback {
 
     /**
      * Tag for log output.
@@ -80,20 +80,21 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
 
     private static final String BARCODE_READER_URL = "https://play.google.com/store/apps/details?id=com.google.zxing.client.android";
 
-    private static final String SECRETS_FILE_PLAIN = "wpa_supplicant.conf";
-    private static final String SECRETS_FILE_XML = "WifiConfigStore.xml";
-    private static final String[] SECRET_FILES = new String[]{SECRETS_FILE_XML, SECRETS_FILE_PLAIN};
-
     /**
-     * Extra: barcode's bitmap.
+     * Extra: barcode's content.
      */
-    static final String EXTRA_BARCODE = "barcode";
+    static final String EXTRA_CONTENT = "content";
 
     /**
      * Extra: barcode's title.
      */
     static final String EXTRA_TITLE = "title";
 
+    /**
+     * Authority of the {@link FileProvider} sharing exported barcodes.
+     */
+    private static final String EXPORT_AUTHORITY = BuildConfig.APPLICATION_ID + ".export";
+
     /**
      * Local {@link Spinner}s.
      */
@@ -103,18 +104,22 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
      * Local {@link EditText}s.
      */
     private EditText mEtSsid, mEtPassword;
-    private Bitmap mCurrentBarcode;
 
     /**
-     * BarCode's size.
+     * BarCode's size, read with the first barcode.
      */
-    private int barcodeSize = 200;
+    private int barcodeSize = 0;
 
     /**
      * Extra: Got root?
      */
     private static final String EXTRA_GOT_ROOT = "got_root";
 
+    /**
+     * Extra: frames of a multi frame barcode scanned so far.
+     */
+    private static final String EXTRA_FRAMES = "frames";
+
     /**
      * False if runAsRoot failed.
      */
@@ -122,7 +127,54 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
 
     private boolean mFirstLoad = true;
 
-    private boolean mXmlConfig = false;
+    /**
+     * Remove plain text copies left in the cache dir with the next load.
+     */
+    private boolean mFlushCacheFiles = false;
+
+    /**
+     * True while secrets are read, barcodes of saved networks wait for them.
+     */
+    private boolean mSecretsPending = false;
+
+    /**
+     * Start of a cold start, 0 once the first barcode is shown.
+     */
+    private long mStartupStart = 0;
+
+    /**
+     * Running {@link WifiLoader}.
+     */
+    private WifiLoader mLoader;
+
+    /**
+     * Encodes barcodes in background.
+     */
+    private BarcodeScheduler mBarcodeScheduler;
+
+    /**
+     * Running {@link BarcodeExporter}.
+     */
+    private BarcodeExporter mExporter;
+
+    /**
+     * Running {@link NetworkImporter} and its progress.
+     */
+    private NetworkImporter mImporter;
+    private ProgressDialog mImportProgress;
+
+    /**
+     * Background tasks kept across configuration changes.
+     */
+    private static final class RetainedTasks {
+        BarcodeExporter exporter;
+        NetworkImporter importer;
+    }
+
+    /**
+     * Frames of a multi-frame barcode scanned so far.
+     */
+    private final MultiFrame.Assembler mFrameAssembler = new MultiFrame.Assembler();
 
     /**
      * Show wifi configuration as {@link ArrayAdapter}.
@@ -132,7 +184,16 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
         /**
          * Passwords.
          */
-        private final HashMap<WifiConfiguration, String> passwords = new HashMap<>();
+        private SsidSecretIndex secrets;
+
+        /**
+         * Display labels by position, computed once when adding items.
+         */
+        private final ArrayList<String> mLabels = new ArrayList<>();
+
+        private final LayoutInflater mInflater;
+        private final int mResource;
+        private int mDropDownResource;
 
         /**
          * Default constructor.
@@ -142,42 +203,82 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
          */
         public WifiAdapter(final Context context, final int textViewResourceId) {
             super(context, textViewResourceId);
+            mInflater = LayoutInflater.from(context);
+            mResource = textViewResourceId;
+            mDropDownResource = textViewResourceId;
+        }
+
+        @Override
+        public void setDropDownViewResource(final int resource) {
+            super.setDropDownViewResource(resource);
+            mDropDownResource = resource;
         }
 
         @NonNull
         @Override
         public View getView(final int position, final View convertView, @NonNull final ViewGroup parent) {
-            View v = super.getView(position, convertView, parent);
-            ((TextView) v.findViewById(android.R.id.text1)).setText(this
-                    .getItem(position).SSID.replaceAll("\"", ""));
-            return v;
+            return bindView(position, convertView, parent, mResource);
         }
 
         @Override
         public View getDropDownView(final int position, final View convertView,
                                     @NonNull final ViewGroup parent) {
-            View v = super.getDropDownView(position, convertView, parent);
-            assert v != null;
-            ((TextView) v.findViewById(android.R.id.text1)).setText(this
-                    .getItem(position).SSID.replaceAll("\"", ""));
+            return bindView(position, convertView, parent, mDropDownResource);
+        }
+
+        private View bindView(final int position, final View convertView, final ViewGroup parent,
+                              final int resource) {
+            View v = convertView;
+            final TextView tv;
+            if (v == null) {
+                v = mInflater.inflate(resource, parent, false);
+                tv = (TextView) v.findViewById(android.R.id.text1);
+                v.setTag(tv);
+            } else {
+                tv = (TextView) v.getTag();
+            }
+            tv.setText(mLabels.get(position));
             return v;
         }
 
+        /**
+         * Add a {@link WifiConfiguration}.
+         *
+         * @param wc    {@link WifiConfiguration}
+         * @param label label shown to the user
+         */
+        public void add(final WifiConfiguration wc, final String label) {
+            mLabels.add(label);
+            super.add(wc);
+        }
+
+        @Override
+        public void add(final WifiConfiguration wc) {
+            add(wc, WifiStrings.getDisplaySsid(wc.SSID));
+        }
+
+        /**
+         * @param position position
+         * @return label shown to the user, the SSID for configured networks
+         */
+        public String getLabel(final int position) {
+            return mLabels.get(position);
+        }
+
         @Override
         public void clear() {
+            mLabels.clear();
             super.clear();
-            passwords.clear();
+            secrets = null;
         }
 
         /**
-         * Add a {@link WifiConfiguration} with password.
+         * Set passwords for all {@link WifiConfiguration}s.
          *
-         * @param object   {@link WifiConfiguration}
-         * @param password password
+         * @param secrets {@link SsidSecretIndex}
          */
-        public void add(final WifiConfiguration object, final String password) {
-            add(object);
-            passwords.put(object, password);
+        public void setSecrets(final SsidSecretIndex secrets) {
+            this.secrets = secrets;
         }
 
         /**
@@ -188,56 +289,10 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
          */
         public String getPassword(final int position) {
             WifiConfiguration wc = getItem(position);
-            if (wc == null) {
+            if (wc == null || secrets == null) {
                 return null;
             }
-            return passwords.get(wc);
-        }
-    }
-
-    /**
-     * Encloses the incoming string inside double quotes, if it isn't already quoted.
-     *
-     * @param string : the input string
-     * @return a quoted string, of the form "input". If the input string is null, it returns null as
-     * well.
-     */
-    private static String convertToQuotedString(final String string) {
-        if (string == null) {
-            return null;
-        }
-        if (TextUtils.isEmpty(string)) {
-            return "";
-        }
-        int lastPos = string.length() - 1;
-        if (lastPos < 0
-                || (string.charAt(0) == '"' && string.charAt(lastPos) == '"')) {
-            return string;
-        }
-        return '\"' + string + '\"';
-    }
-
-    /**
-     * Run command as root.
-     *
-     * @param command command
-     * @return true, if command was successfully executed
-     */
-    private static boolean runAsRoot(final String command) {
-        Log.i(TAG, "running command as root: ", command);
-        try {
-            Runtime r = Runtime.getRuntime();
-            Process p = r.exec("su");
-            DataOutputStream d = new DataOutputStream(p.getOutputStream());
-            d.writeBytes(command);
-            d.writeBytes("\nexit\n");
-            d.flush();
-            int retval = p.waitFor();
-            Log.i(TAG, "done");
-            return (retval == 0);
-        } catch (Exception e) {
-            Log.e(TAG, "runAsRoot", e);
-            return false;
+            return secrets.getSecret(wc.SSID);
         }
     }
 
@@ -252,8 +307,15 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
         if (savedInstanceState != null) {
             mGotRoot = savedInstanceState.getBoolean(EXTRA_GOT_ROOT, true);
             mFirstLoad = savedInstanceState.getBoolean("mFirstLoad", true);
+            final ArrayList<String> frames = savedInstanceState.getStringArrayList(EXTRA_FRAMES);
+            if (frames != null) {
+                for (String frame : frames) {
+                    mFrameAssembler.add(frame);
+                }
+            }
         } else {
-            flushWifiPasswords();
+            mStartupStart = Metrics.start();
+            mFlushCacheFiles = true;
         }
 
         WifiAdapter adapter = new WifiAdapter(this, android.R.layout.simple_spinner_item);
@@ -270,39 +332,7 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
             @Override
             public void onItemSelected(final AdapterView<?> parent,
                                        final View view, final int position, final long id) {
-                if (position == 0) {
-                    WifiBarcodeActivity.this.mEtSsid.setText(null);
-                    WifiBarcodeActivity.this.mEtSsid.setEnabled(true);
-                    WifiBarcodeActivity.this.mSpNetType.setEnabled(true);
-                    WifiBarcodeActivity.this.mSpNetType.setSelection(0);
-                    WifiBarcodeActivity.this.mEtPassword.setText(null);
-                    WifiBarcodeActivity.this.mEtPassword.setEnabled(true);
-                } else {
-                    WifiAdapter a = (WifiAdapter) WifiBarcodeActivity.this.mSpConfigs.getAdapter();
-                    WifiConfiguration wc = a.getItem(position);
-                    assert wc != null;
-                    WifiBarcodeActivity.this.mEtSsid.setText(wc.SSID
-                            .replaceAll("\"", ""));
-                    WifiBarcodeActivity.this.mEtSsid.setEnabled(false);
-                    int i = 0;
-                    if (wc.allowedAuthAlgorithms
-                            .get(WifiConfiguration.AuthAlgorithm.SHARED)) {
-                        i = 1;
-                    } else if (wc.allowedKeyManagement
-                            .get(WifiConfiguration.KeyMgmt.WPA_PSK)) {
-                        i = 2;
-                    }
-                    WifiBarcodeActivity.this.mSpNetType.setSelection(i);
-                    WifiBarcodeActivity.this.mSpNetType.setEnabled(false);
-                    String p = a.getPassword(position);
-                    WifiBarcodeActivity.this.mEtPassword.setText(p);
-                    WifiBarcodeActivity.this.mEtPassword.setEnabled(i != 0
-                            && TextUtils.isEmpty(p));
-                }
-                WifiBarcodeActivity.this.showBarcode();
-                WifiBarcodeActivity.this.findViewById(R.id.add).setVisibility(
-                        View.GONE);
-
+                showConfiguration(position);
             }
 
             @Override
@@ -323,6 +353,7 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
                         && (WifiBarcodeActivity.this.mSpConfigs
                         .getSelectedItemPosition() == 0 || TextUtils
                         .isEmpty(p)));
+                updateBarcode(0);
             }
 
             @Override
@@ -331,7 +362,67 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
             }
         });
 
-        barcodeSize = getResources().getInteger(R.integer.barcode_size);
+        TextWatcher watcher = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(final CharSequence s, final int start, final int count,
+                                          final int after) {
+                // nothing to do
+            }
+
+            @Override
+            public void onTextChanged(final CharSequence s, final int start, final int before,
+                                      final int count) {
+                // nothing to do
+            }
+
+            @Override
+            public void afterTextChanged(final Editable s) {
+                updateBarcode(BarcodeScheduler.DEBOUNCE_DELAY);
+            }
+        };
+        mEtSsid.addTextChangedListener(watcher);
+        mEtPassword.addTextChangedListener(watcher);
+
+        mBarcodeScheduler = new BarcodeScheduler(this);
+
+        //noinspection deprecation
+        final RetainedTasks retained = (RetainedTasks) getLastNonConfigurationInstance();
+        if (retained != null && retained.importer != null) {
+            mImporter = retained.importer;
+            showImportProgress();
+            mImporter.setCallback(this);
+        }
+        if (retained != null && retained.exporter != null) {
+            mExporter = retained.exporter;
+            mExporter.setCallback(this);
+        }
+
+        final View root = getWindow().getDecorView();
+        root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                root.getViewTreeObserver().removeOnPreDrawListener(this);
+                // the first frame is out, ZXing is needed next
+                mBarcodeScheduler.prewarm();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Keep a running {@link BarcodeExporter} and {@link NetworkImporter} across configuration
+     * changes.
+     */
+    @SuppressWarnings("deprecation")
+    @Override
+    public Object onRetainNonConfigurationInstance() {
+        if (mExporter == null && mImporter == null) {
+            return null;
+        }
+        final RetainedTasks retained = new RetainedTasks();
+        retained.exporter = mExporter;
+        retained.importer = mImporter;
+        return retained;
     }
 
     /**
@@ -342,6 +433,7 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
         super.onSaveInstanceState(outState);
         outState.putBoolean(EXTRA_GOT_ROOT, mGotRoot);
         outState.putBoolean("mFirstLoad", mFirstLoad);
+        outState.putStringArrayList(EXTRA_FRAMES, mFrameAssembler.getFrames());
     }
 
     /**
@@ -350,6 +442,7 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
     @Override
     public boolean onCreateOptionsMenu(final Menu menu) {
         getSupportMenuInflater().inflate(R.menu.menu, menu);
+        menu.findItem(R.id.item_metrics).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -364,29 +457,16 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
                 startActivity(new Intent("android.settings.WIFI_SETTINGS"));
                 return true;
             case R.id.item_scan:
-                try {
-                    Intent intent = new Intent(
-                            "com.google.zxing.client.android.SCAN");
-                    // intent.setPackage("com.google.zxing.client.android");
-                    intent.putExtra("SCAN_MODE", "QR_CODE_MODE");
-                    startActivityForResult(intent, 0);
-                } catch (ActivityNotFoundException e) {
-                    Log.e(TAG, "failed launching scanner", e);
-                    Builder b = new Builder(this);
-                    b.setTitle(R.string.install_barcode_scanner_);
-                    b.setMessage(R.string.install_barcode_scanner_hint);
-                    b.setNegativeButton(android.R.string.cancel, null);
-                    b.setPositiveButton(R.string.install,
-                            new DialogInterface.OnClickListener() {
-                                @Override
-                                public void onClick(final DialogInterface dialog,
-                                                    final int which) {
-                                    startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(BARCODE_READER_URL)));
-                                }
-                            }
-                    );
-                    b.show();
-                }
+                startScan();
+                return true;
+            case R.id.item_export:
+                exportAll();
+                return true;
+            case R.id.item_bundle:
+                showBundle();
+                return true;
+            case R.id.item_metrics:
+                shareMetrics();
                 return true;
             case R.id.item_about:
                 startActivity(new Intent(this, About.class));
@@ -396,6 +476,35 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
         }
     }
 
+    /**
+     * Launch the barcode scanner.
+     */
+    private void startScan() {
+        try {
+            Intent intent = new Intent(
+                    "com.google.zxing.client.android.SCAN");
+            // intent.setPackage("com.google.zxing.client.android");
+            intent.putExtra("SCAN_MODE", "QR_CODE_MODE");
+            startActivityForResult(intent, 0);
+        } catch (ActivityNotFoundException e) {
+            Log.e(TAG, "failed launching scanner", e);
+            Builder b = new Builder(this);
+            b.setTitle(R.string.install_barcode_scanner_);
+            b.setMessage(R.string.install_barcode_scanner_hint);
+            b.setNegativeButton(android.R.string.cancel, null);
+            b.setPositiveButton(R.string.install,
+                    new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(final DialogInterface dialog,
+                                            final int which) {
+                            startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(BARCODE_READER_URL)));
+                        }
+                    }
+            );
+            b.show();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -422,7 +531,7 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
                 break;
             case R.id.barcode:
                 final Intent i = new Intent(this, ViewerActivity.class);
-                i.putExtra(EXTRA_BARCODE, mCurrentBarcode);
+                i.putExtra(EXTRA_CONTENT, getWifiPayload());
                 i.putExtra(EXTRA_TITLE, mEtSsid.getText().toString());
                 startActivity(i);
                 break;
@@ -437,26 +546,83 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
         loadWifiConfigurations();
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mBarcodeScheduler.cancel();
+        if (mLoader != null) {
+            mLoader.cancel(true);
+            mLoader = null;
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mBarcodeScheduler.shutdown();
+        if (mExporter != null) {
+            if (isFinishing()) {
+                mExporter.cancel(true);
+            } else {
+                // picked up by the next instance, see onRetainNonConfigurationInstance()
+                mExporter.setCallback(null);
+            }
+            mExporter = null;
+        }
+        if (mImporter != null) {
+            if (isFinishing()) {
+                mImporter.cancel(false);
+            } else {
+                // picked up by the next instance, see onRetainNonConfigurationInstance()
+                mImporter.setCallback(null);
+            }
+            mImporter = null;
+        }
+        if (mImportProgress != null) {
+            mImportProgress.dismiss();
+            mImportProgress = null;
+        }
+        if (isFinishing()) {
+            RootShell.closeInstance();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(final int level) {
+        super.onTrimMemory(level);
+        BarcodeCache.getInstance().trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        BarcodeCache.getInstance().trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
     /**
-     * Load wifi configurations.
+     * Load wifi configurations in background.
      */
     private void loadWifiConfigurations() {
+        if (mLoader != null) {
+            mLoader.cancel(true);
+        }
+        mLoader = new WifiLoader(this, this);
+        mLoader.setFlushCacheFiles(mFlushCacheFiles);
+        mFlushCacheFiles = false;
+        mSecretsPending = true;
+        mLoader.execute();
+    }
+
+    @Override
+    public void onConfigurationsLoaded(final List<WifiConfiguration> wcs, final String currentSSID) {
         WifiAdapter adapter = (WifiAdapter) mSpConfigs.getAdapter();
-        WifiManager wm = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
-        assert wm != null;
-        List<WifiConfiguration> wcs = wm.getConfiguredNetworks();
-        String currentSSID = wm.getConnectionInfo().getSSID();
         Log.d(TAG, "currentSSID=", currentSSID);
-        WifiConfiguration custom = new WifiConfiguration();
-        custom.SSID = getString(R.string.custom);
         adapter.clear();
-        adapter.add(custom);
-        flushWifiPasswords();
-        Log.d(TAG, "#wcs=", wcs == null ? "null" : wcs.size());
+        adapter.add(new WifiConfiguration(), getString(R.string.custom));
         if (wcs != null) {
             int selected = -1;
             for (WifiConfiguration wc : wcs) {
-                adapter.add(wc, getWifiPassword(wc));
+                adapter.add(wc);
                 Log.d(TAG, "wc.SSID=", wc.SSID);
                 if (mFirstLoad && currentSSID != null && currentSSID.equals(wc.SSID)) {
                     selected = adapter.getCount() - 1;
@@ -467,293 +633,437 @@ public final class WifiBarcodeActivity extends SherlockActivity implements
                 // mFirstLoad == true
                 mSpConfigs.setSelection(selected);
             }
+            if (mFirstLoad && mStartupStart != 0) {
+                Metrics.stop(Metrics.STARTUP_NETWORK_LIST, mStartupStart);
+                traceFirstDraw(mStartupStart);
+            }
             mFirstLoad = false;
         }
     }
 
     /**
-     * Add wifi configuration.
+     * Stop {@link Metrics#STARTUP_FIRST_DRAW} once the frame showing the network list is drawn.
+     *
+     * @param start start of the span
      */
-    private void addWifi() {
-        WifiConfiguration wc = new WifiConfiguration();
-        wc.allowedAuthAlgorithms.clear();
-        wc.allowedGroupCiphers.clear();
-        wc.allowedKeyManagement.clear();
-        wc.allowedPairwiseCiphers.clear();
-        wc.allowedProtocols.clear();
-
-        //noinspection ConstantConditions
-        wc.SSID = convertToQuotedString(mEtSsid.getText().toString());
-        wc.hiddenSSID = true;
+    private void traceFirstDraw(final long start) {
+        final View root = getWindow().getDecorView();
+        root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                root.getViewTreeObserver().removeOnPreDrawListener(this);
+                Metrics.stop(Metrics.STARTUP_FIRST_DRAW, start);
+                return true;
+            }
+        });
+    }
 
-        //noinspection ConstantConditions
-        String password = mEtPassword.getText().toString();
-
-        switch (mSpNetType.getSelectedItemPosition()) {
-            case 1: // WEP
-                wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
-                wc.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.OPEN);
-                wc.allowedAuthAlgorithms
-                        .set(WifiConfiguration.AuthAlgorithm.SHARED);
-                int length = password.length();
-                // WEP-40, WEP-104, and 256-bit WEP (WEP-232?)
-                if ((length == 10 || length == 26 || length == 58)
-                        && password.matches("[0-9A-Fa-f]*")) {
-                    wc.wepKeys[0] = password;
-                } else {
-                    wc.wepKeys[0] = '"' + password + '"';
-                }
-                break;
-            case 2: // WPA
-                wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
-                if (password.matches("[0-9A-Fa-f]{64}")) {
-                    wc.preSharedKey = password;
-                } else {
-                    wc.preSharedKey = '"' + password + '"';
-                }
-                break;
-            default: // OPEN
-                wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
-                break;
+    @Override
+    public void onPasswordsLoaded(final SsidSecretIndex secrets) {
+        mLoader = null;
+        mSecretsPending = false;
+        WifiAdapter adapter = (WifiAdapter) mSpConfigs.getAdapter();
+        adapter.setSecrets(secrets);
+        final int position = mSpConfigs.getSelectedItemPosition();
+        if (position > 0) {
+            showConfiguration(position);
         }
+    }
 
-        WifiManager wm = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
-        assert wm != null;
-        int netId = wm.addNetwork(wc);
-        int msg;
-        final boolean ret = wm.saveConfiguration();
-        if (ret) {
-            wm.enableNetwork(netId, false);
-            msg = R.string.wifi_added;
-        } else {
-            msg = R.string.wifi_failed;
+    @Override
+    public void onPasswordsFailed(final int msg) {
+        mLoader = null;
+        mSecretsPending = false;
+        if (msg == R.string.error_need_root) {
+            mGotRoot = false;
         }
         Toast.makeText(this, msg, Toast.LENGTH_LONG).show();
+        final int position = mSpConfigs.getSelectedItemPosition();
+        if (position > 0) {
+            // show what we have, without password
+            showConfiguration(position);
+        }
     }
 
     /**
-     * Parse result from QR Code.
+     * Show selected configuration.
      *
-     * @param result content from qr code
+     * @param position position in {@link #mSpConfigs}
      */
-    private void parseResult(final String result) {
-        Log.d(TAG, "parseResult(", result, ")");
-        if (result == null || !result.startsWith("WIFI:")) {
-            Log.e(TAG, "error parsing result: ", result);
-            Toast.makeText(this, R.string.error_read_barcode, Toast.LENGTH_LONG)
-                    .show();
-            return;
+    private void showConfiguration(final int position) {
+        if (position == 0) {
+            mEtSsid.setText(null);
+            mEtSsid.setEnabled(true);
+            mSpNetType.setEnabled(true);
+            mSpNetType.setSelection(0);
+            mEtPassword.setText(null);
+            mEtPassword.setEnabled(true);
+        } else {
+            WifiAdapter a = (WifiAdapter) mSpConfigs.getAdapter();
+            WifiConfiguration wc = a.getItem(position);
+            assert wc != null;
+            mEtSsid.setText(a.getLabel(position));
+            mEtSsid.setEnabled(false);
+            final int i = getNetType(wc);
+            mSpNetType.setSelection(i);
+            mSpNetType.setEnabled(false);
+            String p = a.getPassword(position);
+            mEtPassword.setText(p);
+            mEtPassword.setEnabled(i != 0 && TextUtils.isEmpty(p));
         }
-
-        String[] c = result.substring("WIFI:".length()).split(";", 3);
-        for (String line : c) {
-            if (line.startsWith("S:")) {
-                mEtSsid.setText(line.substring(2));
-            } else if (line.startsWith("T:NOPASS")) {
-                mSpNetType.setSelection(0);
-            } else if (line.startsWith("T:WEP")) {
-                mSpNetType.setSelection(1);
-            } else if (line.startsWith("T:WPA")) {
-                mSpNetType.setSelection(2);
-            } else if (line.startsWith("P:")) {
-                mEtPassword.setText(line.substring(2).replaceAll(";?;$",
-                        ""));
-            }
+        if (position > 0 && mSecretsPending) {
+            // SSID only for now, the barcode follows with the secrets
+            mBarcodeScheduler.cancel();
+            findViewById(R.id.barcode).setVisibility(View.GONE);
+            findViewById(R.id.c2e).setVisibility(View.GONE);
+        } else {
+            showBarcode();
         }
+        findViewById(R.id.add).setVisibility(View.GONE);
+    }
 
-        mSpConfigs.setSelection(0);
+    /**
+     * Share recorded {@link Metrics} as JSON.
+     */
+    private void shareMetrics() {
+        final String json = Metrics.getInstance().toJson();
+        Log.i(TAG, "metrics: ", json);
+        final Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("application/json");
+        intent.putExtra(Intent.EXTRA_TEXT, json);
+        try {
+            startActivity(Intent.createChooser(intent, getString(R.string.metrics)));
+        } catch (ActivityNotFoundException e) {
+            Log.e(TAG, "failed sharing metrics", e);
+        }
+    }
 
-        findViewById(R.id.add).setVisibility(View.VISIBLE);
+    /**
+     * @param wc {@link WifiConfiguration}
+     * @return network type, position in {@link #mSpNetType}
+     */
+    private static int getNetType(final WifiConfiguration wc) {
+        if (wc.allowedAuthAlgorithms.get(WifiConfiguration.AuthAlgorithm.SHARED)) {
+            return WifiPayload.TYPE_WEP;
+        } else if (wc.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.WPA_PSK)) {
+            return WifiPayload.TYPE_WPA;
+        }
+        return WifiPayload.TYPE_OPEN;
     }
 
     /**
-     * Flush wifi password cache.
+     * Get all saved networks with a known password, open networks included.
+     * Shows how many secured networks were skipped.
+     *
+     * @return saved networks, without "custom"
      */
-    private void flushWifiPasswords() {
-        for (String name : SECRET_FILES) {
-            deleteCacheFile(name);
+    private ArrayList<WifiPayload> getAllPayloads() {
+        final WifiAdapter a = (WifiAdapter) mSpConfigs.getAdapter();
+        final ArrayList<WifiPayload> payloads = new ArrayList<>();
+        int skipped = 0;
+        // skip "custom"
+        for (int position = 1; position < a.getCount(); position++) {
+            final WifiConfiguration wc = a.getItem(position);
+            final int type = getNetType(wc);
+            final String password = a.getPassword(position);
+            if (type != WifiPayload.TYPE_OPEN && TextUtils.isEmpty(password)) {
+                // secrets not loaded or root denied, a barcode without password is useless
+                Log.w(TAG, "skip network without password: ", wc.SSID);
+                ++skipped;
+                continue;
+            }
+            payloads.add(new WifiPayload(type, a.getLabel(position), password, false));
+        }
+        if (skipped > 0) {
+            Toast.makeText(this, getString(R.string.export_skipped, skipped), Toast.LENGTH_LONG).show();
         }
+        return payloads;
     }
 
-    private void deleteCacheFile(final String name) {
-        final File f = getCacheFile(name);
-        if (f.exists() && !f.delete()) {
-            Log.e(TAG, "error deleting file: ", f);
+    /**
+     * Export barcodes of all configured networks.
+     */
+    private void exportAll() {
+        final ArrayList<BarcodeExporter.Item> items = new ArrayList<>();
+        final StringBuilder sb = new StringBuilder();
+        for (WifiPayload p : getAllPayloads()) {
+            sb.setLength(0);
+            items.add(new BarcodeExporter.Item(p.ssid, p.appendTo(sb).toString()));
         }
+        if (items.isEmpty()) {
+            Toast.makeText(this, R.string.export_empty, Toast.LENGTH_LONG).show();
+            return;
+        }
+        if (mExporter != null) {
+            mExporter.cancel(true);
+        }
+        BarcodeExporter.deleteExports(this);
+        mExporter = new BarcodeExporter(this, items, this);
+        mExporter.execute();
+        Toast.makeText(this, getString(R.string.exporting, items.size()), Toast.LENGTH_SHORT).show();
     }
 
-    private static File getRealCacheDir(final Context context) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            return context.getExternalCacheDir();
-        } else {
-            return context.getCacheDir();
+    /**
+     * Show all saved networks in a single barcode.
+     */
+    private void showBundle() {
+        final ArrayList<WifiPayload> payloads = getAllPayloads();
+        if (payloads.isEmpty()) {
+            Toast.makeText(this, R.string.export_empty, Toast.LENGTH_LONG).show();
+            return;
         }
+        final Intent i = new Intent(this, ViewerActivity.class);
+        i.putExtra(EXTRA_CONTENT, getBundleContent(payloads));
+        i.putExtra(EXTRA_TITLE, getString(R.string.bundle_title, payloads.size()));
+        startActivity(i);
     }
 
     /**
-     * @return file holding cached wpa_supplicant.conf.
+     * @param payloads networks
+     * @return barcode content holding all networks
      */
-    private File getCacheFile() {
-        return getCacheFile("wpa_supplicant.conf");
+    @NonNull
+    private static String getBundleContent(final List<WifiPayload> payloads) {
+        return PackedPayload.encode(payloads);
+    }
+
+    @Override
+    public void onExportDone(final ArrayList<File> files, final String type) {
+        mExporter = null;
+        final Intent intent;
+        if (files.size() == 1) {
+            intent = new Intent(Intent.ACTION_SEND);
+            intent.putExtra(Intent.EXTRA_STREAM, getExportUri(files.get(0)));
+        } else {
+            final ArrayList<Uri> uris = new ArrayList<>(files.size());
+            for (File f : files) {
+                uris.add(getExportUri(f));
+            }
+            intent = new Intent(Intent.ACTION_SEND_MULTIPLE);
+            intent.putParcelableArrayListExtra(Intent.EXTRA_STREAM, uris);
+        }
+        intent.setType(type);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        try {
+            startActivity(Intent.createChooser(intent, getString(R.string.export_all)));
+        } catch (ActivityNotFoundException e) {
+            Log.e(TAG, "failed sharing export", e);
+            Toast.makeText(this, R.string.error_export, Toast.LENGTH_LONG).show();
+        }
     }
 
-    private File getCacheFile(final String name) {
-        return new File(getRealCacheDir(this), name);
+    @Override
+    public void onExportFailed() {
+        mExporter = null;
+        Toast.makeText(this, R.string.error_export, Toast.LENGTH_LONG).show();
     }
 
-    private String buildCommand(String name, File target) {
-        final String targetPath = target.getAbsolutePath();
-        final String tpl = "pkgid=$(grep '%s' /data/system/packages.list | cut -d' ' -f2)\n"
-                + "cat /data/misc/wifi/%s > '%s'\n"
-                + "chown $pkgid:$pkgid '%s'\n"
-                + "chmod 644 '%s'";
-        return String.format(tpl, BuildConfig.APPLICATION_ID, name, targetPath, targetPath, targetPath);
+    private Uri getExportUri(final File file) {
+        return FileProvider.getUriForFile(this, EXPORT_AUTHORITY, file);
     }
 
-    private File ensureCacheFile(final String name) {
-        final File target = getCacheFile(name);
-        if (target.exists()) {
-            return target;
-        }
+    /**
+     * Add wifi configuration.
+     */
+    private void addWifi() {
+        //noinspection ConstantConditions
+        WifiConfiguration wc = NetworkImporter.createConfiguration(mSpNetType.getSelectedItemPosition(),
+                mEtSsid.getText().toString(), mEtPassword.getText().toString(), true);
 
-        final String command = buildCommand(name, target);
-        if (!runAsRoot(command)) {
-            return null;
+        WifiManager wm = (WifiManager) getApplicationContext().getSystemService(WIFI_SERVICE);
+        assert wm != null;
+        int netId = wm.addNetwork(wc);
+        int msg;
+        final boolean ret = wm.saveConfiguration();
+        if (ret) {
+            wm.enableNetwork(netId, false);
+            msg = R.string.wifi_added;
+        } else {
+            msg = R.string.wifi_failed;
         }
-        return target;
+        Toast.makeText(this, msg, Toast.LENGTH_LONG).show();
     }
 
-    private File ensureCacheFiles() {
-        File target = ensureCacheFile(SECRETS_FILE_XML);
-        if (target != null) {
-            mXmlConfig = true;
-            return new File(target.getAbsolutePath());
-        } else {
-            target = ensureCacheFile(SECRETS_FILE_PLAIN);
-            if (target != null) {
-                mXmlConfig = false;
-                return new File(target.getAbsolutePath());
-            } else {
-                Toast.makeText(this, R.string.error_need_root, Toast.LENGTH_LONG).show();
-                mGotRoot = false;
-                return null;
+    /**
+     * Ask to add all networks of a bundle.
+     *
+     * @param payloads networks
+     */
+    private void confirmImport(final List<WifiPayload> payloads) {
+        Builder b = new Builder(this);
+        b.setTitle(R.string.add);
+        b.setMessage(getString(R.string.import_networks_, payloads.size()));
+        b.setNegativeButton(android.R.string.cancel, null);
+        b.setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(final DialogInterface dialog, final int which) {
+                importNetworks(payloads);
             }
-        }
+        });
+        b.show();
     }
 
-    private String parsePlainConfig(final File f, final String ssid) {
-        try {
-            BufferedReader br = new BufferedReader(new FileReader(f));
-            String l;
-            StringBuffer sb = new StringBuffer();
-            while ((l = br.readLine()) != null) {
-                if (l.startsWith("network=") || l.equals("}")) {
-                    String config = sb.toString();
-                    // parse it
-                    if (config.contains("ssid=" + ssid)) {
-                        Log.d(TAG, "wifi config:");
-                        Log.d(TAG, config);
-                        int i = config.indexOf("wep_key0=");
-                        int len;
-                        if (i < 0) {
-                            i = config.indexOf("psk=");
-                            len = "psk=".length();
-                        } else {
-                            len = "wep_key0=".length();
-                        }
-                        if (i < 0) {
-                            br.close();
-                            return null;
-                        }
+    /**
+     * Add all networks in background.
+     *
+     * @param payloads networks
+     */
+    private void importNetworks(final List<WifiPayload> payloads) {
+        if (mImporter != null) {
+            return;
+        }
+        mImporter = new NetworkImporter(this, payloads, this);
+        showImportProgress();
+        mImporter.execute();
+    }
 
-                        br.close();
-                        return config.substring(i + len + 1,
-                                config.indexOf("\n", i) - 1);
+    /**
+     * Show progress of {@link #mImporter}.
+     */
+    private void showImportProgress() {
+        mImportProgress = new ProgressDialog(this);
+        mImportProgress.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        mImportProgress.setMax(mImporter.getTotal());
+        mImportProgress.setCancelable(false);
+        onImportProgress(mImporter.getAdded(), mImporter.getFailed());
+        mImportProgress.show();
+    }
 
-                    }
-                    sb = new StringBuffer();
-                }
-                sb.append(l).append("\n");
-            }
-            br.close();
-        } catch (IOException e) {
-            Log.e(TAG, "error reading file", e);
-            Toast.makeText(this, R.string.error_read_file, Toast.LENGTH_LONG).show();
-            return null;
+    @Override
+    public void onImportProgress(final int added, final int failed) {
+        if (mImportProgress != null) {
+            mImportProgress.setProgress(added + failed);
+            mImportProgress.setMessage(getString(R.string.import_progress, added, failed));
         }
-        return null;
     }
 
-    private String parseXmlConfig(final File f, final String ssid) {
-        try {
-            return new XmlConfigParser().parse(new FileInputStream(f), ssid);
-        } catch (IOException | XmlPullParserException e) {
-            Log.e(TAG, "error reading file", e);
-            Toast.makeText(this, R.string.error_read_file, Toast.LENGTH_LONG).show();
-            return null;
+    @Override
+    public void onImportDone(final int added, final int failed, final boolean saved) {
+        mImporter = null;
+        if (mImportProgress != null) {
+            mImportProgress.dismiss();
+            mImportProgress = null;
+        }
+        if (saved) {
+            Toast.makeText(this, getString(R.string.import_done, added, failed), Toast.LENGTH_LONG).show();
+            loadWifiConfigurations();
+        } else {
+            Toast.makeText(this, R.string.wifi_failed, Toast.LENGTH_LONG).show();
         }
     }
 
+    /**
+     * Add a frame of a multi-frame barcode, scan the next one until all frames are read.
+     *
+     * @param frame content from qr code
+     */
+    private void parseFrame(final String frame) {
+        if (!mFrameAssembler.add(frame)) {
+            Log.e(TAG, "error parsing frame: ", frame);
+            Toast.makeText(this, R.string.error_read_barcode, Toast.LENGTH_LONG).show();
+            return;
+        }
+        if (mFrameAssembler.isComplete()) {
+            final String content = mFrameAssembler.getContent();
+            mFrameAssembler.reset();
+            parseResult(content);
+            return;
+        }
+        Toast.makeText(this, getString(R.string.frame_received, mFrameAssembler.getReceived(),
+                mFrameAssembler.getTotal()), Toast.LENGTH_SHORT).show();
+        startScan();
+    }
 
     /**
-     * Get WiFi password.
+     * Parse result from QR Code.
      *
-     * @param wc {@link WifiConfiguration}
-     * @return password
+     * @param result content from qr code
      */
-    private String getWifiPassword(final WifiConfiguration wc) {
-        Log.d(TAG, "getWifiPassword(", wc, ")");
-        final File f = ensureCacheFiles();
-        if (f == null) {
-            return null;
+    private void parseResult(final String result) {
+        Log.d(TAG, "parseResult(", result, ")");
+        if (MultiFrame.isFrame(result)) {
+            parseFrame(result);
+            return;
+        }
+        List<WifiPayload> bundle = PackedPayload.decode(result);
+        if (bundle != null) {
+            confirmImport(bundle);
+            return;
+        }
+        bundle = WifiPayload.parseAll(result);
+        if (bundle != null && bundle.size() > 1) {
+            confirmImport(bundle);
+            return;
+        }
+        final WifiPayload content = bundle == null ? WifiPayload.parse(result) : bundle.get(0);
+        if (content == null) {
+            Log.e(TAG, "error parsing result: ", result);
+            Toast.makeText(this, R.string.error_read_barcode, Toast.LENGTH_LONG)
+                    .show();
+            return;
         }
 
-        if (!f.exists()) {
-            Toast.makeText(this, R.string.error_read_file, Toast.LENGTH_LONG).show();
-            return null;
+        if (content.ssid != null) {
+            mEtSsid.setText(content.ssid);
+        }
+        if (content.type == WifiPayload.TYPE_SAE) {
+            // closest match, the password is all we need
+            mSpNetType.setSelection(WifiPayload.TYPE_WPA);
+        } else if (content.type != WifiPayload.TYPE_UNKNOWN && content.type <= WifiPayload.TYPE_WPA) {
+            mSpNetType.setSelection(content.type);
+        }
+        if (content.password != null) {
+            mEtPassword.setText(content.password);
         }
 
-        return mXmlConfig ? parseXmlConfig(f, wc.SSID) : parsePlainConfig(f, wc.SSID);
+        mSpConfigs.setSelection(0);
+
+        findViewById(R.id.add).setVisibility(View.VISIBLE);
     }
 
     @NonNull
-    private String getBarcodeContent() {
-        int type = mSpNetType.getSelectedItemPosition();
-        String[] types = getResources().getStringArray(
-                R.array.networktypes);
-        StringBuilder sb = new StringBuilder();
-        sb.append("WIFI:T:");
-        sb.append(types[type]);
-        sb.append(";S:");
-        sb.append(mEtSsid.getText());
-        sb.append(";P:");
-        if (type == 0) {
-            sb.append("nopass");
-        } else {
-            sb.append(mEtPassword.getText());
-        }
-        sb.append(";;");
-        return sb.toString();
+    private String getWifiPayload() {
+        return WifiPayload.build(mSpNetType.getSelectedItemPosition(), mEtSsid.getText(),
+                mEtPassword.getText());
     }
 
+    /**
+     * Encode the current barcode right away.
+     */
     private void showBarcode() {
-        QRCodeWriter w = new QRCodeWriter();
-        try {
-            final BitMatrix qrCode = w.encode(getBarcodeContent(), BarcodeFormat.QR_CODE, barcodeSize, barcodeSize);
-            final int width = qrCode.getWidth();
-            final int height = qrCode.getHeight();
-            mCurrentBarcode = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
-            for (int x = 0; x < width; x++) {
-                for (int y = 0; y < height; y++) {
-                    mCurrentBarcode.setPixel(x, y, qrCode.get(x, y) ? Color.BLACK : Color.WHITE);
-                }
-            }
-            final ImageView iv = (ImageView) findViewById(R.id.barcode);
-            iv.setVisibility(View.VISIBLE);
-            iv.setImageBitmap(mCurrentBarcode);
-            findViewById(R.id.c2e).setVisibility(View.VISIBLE);
-        } catch (WriterException e) {
-            Log.e(TAG, "error generating qr code", e);
+        mBarcodeScheduler.schedule(getWifiPayload(), 0);
+    }
+
+    /**
+     * Update a visible barcode after the input changed.
+     *
+     * @param delay delay in milliseconds, see {@link BarcodeScheduler#schedule(String, long)}
+     */
+    private void updateBarcode(final long delay) {
+        if (findViewById(R.id.barcode).getVisibility() == View.VISIBLE) {
+            mBarcodeScheduler.schedule(getWifiPayload(), delay);
+        }
+    }
+
+    @Override
+    public void onBarcodeReady(final String content, final Bitmap barcode, final int frames) {
+        if (barcodeSize == 0) {
+            barcodeSize = getResources().getInteger(R.integer.barcode_size);
+        }
+        final ImageView iv = (ImageView) findViewById(R.id.barcode);
+        iv.setVisibility(View.VISIBLE);
+        iv.setImageDrawable(new BarcodeDrawable(barcode, barcodeSize));
+        final TextView tvHint = (TextView) findViewById(R.id.c2e);
+        if (frames > 1) {
+            // the first frame alone is not a valid barcode, the viewer cycles through all
+            tvHint.setText(getString(R.string.first_frame_only, frames));
+        } else {
+            tvHint.setText(R.string.click_to_enlarge);
+        }
+        tvHint.setVisibility(View.VISIBLE);
+        if (mStartupStart != 0) {
+            Metrics.stop(Metrics.STARTUP_FIRST_BARCODE, mStartupStart);
+            mStartupStart = 0;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package de.ub0r.android.wifibarcode;
+
+import android.content.Context;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+import android.os.AsyncTask;
+
+import java.util.List;
+
+import de.ub0r.android.logg0r.Log;
+import de.ub0r.android.wifibarcode.core.Metrics;
+import de.ub0r.android.wifibarcode.core.SsidSecretIndex;
+
+/**
+ * Load configured networks and their secrets in background.
+ * Networks are published as soon as they are known, secrets follow once read.
+ * All callbacks run on the UI thread, none are called after {@link #cancel(boolean)}.
+ */
+final class WifiLoader extends AsyncTask<Void, List<WifiConfiguration>, SsidSecretIndex> {
+
+    private static final String TAG = "WifiLoader";
+
+    /**
+     * Receive results from {@link WifiLoader}.
+     */
+    interface Callback {
+
+        /**
+         * Configured networks are known.
+         *
+         * @param wcs         configured networks, may be null
+         * @param currentSSID SSID of the current connection, may be null
+         */
+        void onConfigurationsLoaded(List<WifiConfiguration> wcs, String currentSSID);
+
+        /**
+         * Secrets are read.
+         *
+         * @param secrets {@link SsidSecretIndex}
+         */
+        void onPasswordsLoaded(SsidSecretIndex secrets);
+
+        /**
+         * Reading secrets failed.
+         *
+         * @param msg string resource describing the error
+         */
+        void onPasswordsFailed(int msg);
+    }
+
+    private final WifiManager mWifiManager;
+    private final SecretsReader mSecretsReader;
+    private Callback mCallback;
+    private volatile String mCurrentSSID;
+    private boolean mFlushCacheFiles = false;
+
+    WifiLoader(final Context context, final Callback callback) {
+        mWifiManager = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+        mSecretsReader = new SecretsReader(context);
+        mCallback = callback;
+    }
+
+    /**
+     * @param flush remove plain text copies left in the cache dir once networks are published
+     */
+    void setFlushCacheFiles(final boolean flush) {
+        mFlushCacheFiles = flush;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected SsidSecretIndex doInBackground(final Void... params) {
+        final long start = Metrics.start();
+        final List<WifiConfiguration> wcs = mWifiManager.getConfiguredNetworks();
+        Metrics.stop(Metrics.WIFI_CONFIGURED_NETWORKS, start);
+        mCurrentSSID = mWifiManager.getConnectionInfo().getSSID();
+        Log.d(TAG, "#wcs=", wcs == null ? "null" : wcs.size());
+        publishProgress(wcs);
+        if (mFlushCacheFiles) {
+            mSecretsReader.flushWifiPasswords();
+        }
+        if (wcs == null || isCancelled()) {
+            return null;
+        }
+        return mSecretsReader.readSecrets();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void onProgressUpdate(final List<WifiConfiguration>... values) {
+        if (mCallback != null && !isCancelled()) {
+            mCallback.onConfigurationsLoaded(values[0], mCurrentSSID);
+        }
+    }
+
+    @Override
+    protected void onPostExecute(final SsidSecretIndex secrets) {
+        if (mCallback == null) {
+            return;
+        }
+        if (secrets != null) {
+            mCallback.onPasswordsLoaded(secrets);
+        } else if (mSecretsReader.getError() != 0) {
+            mCallback.onPasswordsFailed(mSecretsReader.getError());
+        }
+    }
+
+    @Override
+    protected void onCancelled() {
+        mCallback = null;
+    }
+}
@@ -0,0 +1,98 @@
+package de.ub0r.android.wifibarcode.benchmarks;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.ub0r.android.wifibarcode.core.PackedPayload;
+import de.ub0r.android.wifibarcode.core.WifiPayload;
+
+/**
+ * Multi-network barcodes as plain WIFI: records and as {@link PackedPayload}.
+ * Setup prints content length and QR version of both formats, plain text does not fit a single
+ * QR code for 50 networks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BundleBenchmark {
+
+    @Param({"10", "20", "30"})
+    public int networks;
+
+    private List<WifiPayload> mPayloads;
+    private String mPlain;
+    private String mPacked;
+
+    @Setup
+    public void setup() throws WriterException {
+        mPayloads = SyntheticConfigs.sites(networks);
+        mPlain = WifiPayload.buildAll(mPayloads);
+        mPacked = PackedPayload.encode(mPayloads);
+        System.out.println();
+        System.out.println("plain:  " + mPlain.length() + " chars, " + describe(mPlain));
+        System.out.println("packed: " + mPacked.length() + " chars, " + describe(mPacked));
+        for (int n : new int[]{50}) {
+            final List<WifiPayload> payloads = SyntheticConfigs.sites(n);
+            System.out.println(n + " networks plain:  " + describe(WifiPayload.buildAll(payloads)));
+            System.out.println(n + " networks packed: " + describe(PackedPayload.encode(payloads)));
+        }
+    }
+
+    private static String describe(final String content) {
+        try {
+            return "version " + Encoder.encode(content, ErrorCorrectionLevel.L).getVersion().getVersionNumber();
+        } catch (WriterException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Benchmark
+    public String buildPlain() {
+        return WifiPayload.buildAll(mPayloads);
+    }
+
+    @Benchmark
+    public String buildPacked() {
+        return PackedPayload.encode(mPayloads);
+    }
+
+    @Benchmark
+    public List<WifiPayload> parsePlain() {
+        return WifiPayload.parseAll(mPlain);
+    }
+
+    @Benchmark
+    public List<WifiPayload> parsePacked() {
+        return PackedPayload.decode(mPacked);
+    }
+
+    @Benchmark
+    public QRCode encodePlain() throws WriterException {
+        return Encoder.encode(WifiPayload.buildAll(mPayloads), ErrorCorrectionLevel.L);
+    }
+
+    @Benchmark
+    public QRCode encodePacked() throws WriterException {
+        return Encoder.encode(PackedPayload.encode(mPayloads), ErrorCorrectionLevel.L);
+    }
+}
@@ -0,0 +1,63 @@
+package de.ub0r.android.wifibarcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import de.ub0r.android.wifibarcode.core.PlainConfigParser;
+import de.ub0r.android.wifibarcode.core.SsidSecretIndex;
+import de.ub0r.android.wifibarcode.core.XmlConfigParser;
+import de.ub0r.android.wifibarcode.core.XmlConfigScanner;
+
+/**
+ * Parse synthetic WifiConfigStore.xml and wpa_supplicant.conf files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigParserBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int networks;
+
+    private byte[] mXml;
+    private byte[] mPlain;
+
+    @Setup
+    public void setup() {
+        mXml = SyntheticConfigs.xml(networks);
+        mPlain = SyntheticConfigs.plain(networks);
+    }
+
+    @Benchmark
+    public SsidSecretIndex xml() throws IOException, XmlPullParserException {
+        return new XmlConfigParser().parse(new ByteArrayInputStream(mXml));
+    }
+
+    @Benchmark
+    public SsidSecretIndex xmlScan() {
+        return new XmlConfigScanner().scan(ByteBuffer.wrap(mXml));
+    }
+
+    @Benchmark
+    public SsidSecretIndex plain() throws IOException {
+        return new PlainConfigParser().parse(new ByteArrayInputStream(mPlain));
+    }
+}
@@ -0,0 +1,41 @@
+package de.ub0r.android.wifibarcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import de.ub0r.android.wifibarcode.core.WifiPayload;
+
+/**
+ * Build and parse WIFI: barcode content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBenchmark {
+
+    private final String mSsid = "network-42";
+    private final String mPassword = "correct horse battery staple";
+    private final String mContent = WifiPayload.build(WifiPayload.TYPE_WPA, mSsid, mPassword);
+
+    @Benchmark
+    public String build() {
+        return WifiPayload.build(WifiPayload.TYPE_WPA, mSsid, mPassword);
+    }
+
+    @Benchmark
+    public WifiPayload parse() {
+        return WifiPayload.parse(mContent);
+    }
+}
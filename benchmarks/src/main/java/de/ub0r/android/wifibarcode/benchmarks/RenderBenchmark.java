@@ -0,0 +1,59 @@
+package de.ub0r.android.wifibarcode.benchmarks;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import de.ub0r.android.wifibarcode.core.BarcodePixels;
+import de.ub0r.android.wifibarcode.core.WifiPayload;
+
+/**
+ * Encode WIFI: barcode content and expand the {@link BitMatrix} into pixels.
+ * size 0 encodes at module resolution, as the app does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"0", "300"})
+    public int size;
+
+    private final String mContent = WifiPayload.build(WifiPayload.TYPE_WPA, "network-42",
+            "correct horse battery staple");
+    private final BarcodePixels mPixels = new BarcodePixels();
+    private BitMatrix mMatrix;
+
+    @Setup
+    public void setup() throws WriterException {
+        mMatrix = encode();
+    }
+
+    @Benchmark
+    public BitMatrix encode() throws WriterException {
+        return new QRCodeWriter().encode(mContent, BarcodeFormat.QR_CODE, size, size);
+    }
+
+    @Benchmark
+    public int[] render() {
+        return mPixels.render(mMatrix);
+    }
+}
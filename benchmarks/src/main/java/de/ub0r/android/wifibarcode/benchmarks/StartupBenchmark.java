@@ -0,0 +1,77 @@
+package de.ub0r.android.wifibarcode.benchmarks;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import de.ub0r.android.wifibarcode.core.BarcodePixels;
+import de.ub0r.android.wifibarcode.core.SsidSecretIndex;
+import de.ub0r.android.wifibarcode.core.WifiPayload;
+import de.ub0r.android.wifibarcode.core.WifiStrings;
+import de.ub0r.android.wifibarcode.core.XmlConfigScanner;
+
+/**
+ * Cold start stages, every measurement runs in a fresh JVM.
+ * ssidLabels builds the SSID-only list's labels, firstBarcode reads the secrets and encodes the
+ * selected network's barcode, including loading ZXing. Neither covers the framework's inflate,
+ * layout and draw; on a device, see the startup.firstDraw and startup.firstBarcode spans in
+ * the app's metrics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+    @Param({"10", "100"})
+    public int networks;
+
+    private byte[] mXml;
+    private String[] mSsids;
+
+    @Setup
+    public void setup() {
+        mXml = SyntheticConfigs.xml(networks);
+        mSsids = new String[networks];
+        for (int i = 0; i < networks; i++) {
+            mSsids[i] = WifiStrings.convertToQuotedString(SyntheticConfigs.ssid(i));
+        }
+    }
+
+    @Benchmark
+    public ArrayList<String> ssidLabels() {
+        final ArrayList<String> labels = new ArrayList<>(mSsids.length);
+        for (String ssid : mSsids) {
+            labels.add(WifiStrings.getDisplaySsid(ssid));
+        }
+        return labels;
+    }
+
+    @Benchmark
+    public int[] firstBarcode() throws WriterException {
+        final SsidSecretIndex secrets = new XmlConfigScanner().scan(ByteBuffer.wrap(mXml));
+        // network-1 is a WPA network
+        final String ssid = mSsids[1];
+        final String content = WifiPayload.build(WifiPayload.TYPE_WPA, WifiStrings.getDisplaySsid(ssid),
+                secrets.getSecret(ssid));
+        return new BarcodePixels().render(new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, 0, 0));
+    }
+}
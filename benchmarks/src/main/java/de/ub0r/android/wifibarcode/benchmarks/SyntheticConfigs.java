@@ -0,0 +1,111 @@
+package de.ub0r.android.wifibarcode.benchmarks;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.ub0r.android.wifibarcode.core.WifiPayload;
+
+/**
+ * Generate synthetic secrets files for benchmarks.
+ * Every third network is open, every fifth WEP, the rest WPA.
+ */
+final class SyntheticConfigs {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private SyntheticConfigs() {
+    }
+
+    static String ssid(final int i) {
+        return "network-" + i;
+    }
+
+    /**
+     * @param networks number of networks
+     * @return WifiConfigStore.xml as written by Android O and later
+     */
+    static byte[] xml(final int networks) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version='1.0' encoding='utf-8' standalone='yes' ?>\n");
+        sb.append("<WifiConfigStoreData>\n<int name=\"Version\" value=\"1\" />\n<NetworkList>\n");
+        for (int i = 0; i < networks; i++) {
+            final String ssid = ssid(i);
+            sb.append("<Network>\n<WifiConfiguration>\n");
+            sb.append("<string name=\"ConfigKey\">&quot;").append(ssid).append("&quot;WPA_PSK</string>\n");
+            sb.append("<string name=\"SSID\">&quot;").append(ssid).append("&quot;</string>\n");
+            sb.append("<null name=\"BSSID\" />\n");
+            if (i % 3 == 0) {
+                sb.append("<null name=\"PreSharedKey\" />\n<null name=\"WEPKeys\" />\n");
+            } else if (i % 5 == 0) {
+                sb.append("<null name=\"PreSharedKey\" />\n");
+                sb.append("<string-array name=\"WEPKeys\" num=\"4\">\n<item value=\"&quot;wep")
+                        .append(i).append("&quot;\" />\n<item value=\"\" />\n<item value=\"\" />\n")
+                        .append("<item value=\"\" />\n</string-array>\n");
+            } else {
+                sb.append("<string name=\"PreSharedKey\">&quot;secret-").append(i)
+                        .append("&quot;</string>\n<null name=\"WEPKeys\" />\n");
+            }
+            sb.append("<int name=\"WEPTxKeyIndex\" value=\"0\" />\n");
+            sb.append("<boolean name=\"HiddenSSID\" value=\"false\" />\n");
+            sb.append("<byte-array name=\"AllowedKeyMgmt\" num=\"1\">02</byte-array>\n");
+            sb.append("<int name=\"Priority\" value=\"").append(i).append("\" />\n");
+            sb.append("</WifiConfiguration>\n");
+            sb.append("<NetworkStatus>\n<string name=\"SelectionStatus\">NETWORK_SELECTION_ENABLED</string>\n")
+                    .append("<string name=\"DisableReason\">NETWORK_SELECTION_ENABLE</string>\n")
+                    .append("<null name=\"ConnectChoice\" />\n</NetworkStatus>\n");
+            sb.append("<IpConfiguration>\n<string name=\"IpAssignment\">DHCP</string>\n")
+                    .append("<string name=\"ProxySettings\">NONE</string>\n</IpConfiguration>\n");
+            sb.append("</Network>\n");
+        }
+        sb.append("</NetworkList>\n</WifiConfigStoreData>\n");
+        return sb.toString().getBytes(UTF8);
+    }
+
+    /**
+     * @param networks number of networks
+     * @return wpa_supplicant.conf
+     */
+    static byte[] plain(final int networks) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("ctrl_interface=/data/misc/wifi/sockets\nupdate_config=1\n");
+        for (int i = 0; i < networks; i++) {
+            sb.append("\nnetwork={\n\tssid=\"").append(ssid(i)).append("\"\n");
+            if (i % 3 == 0) {
+                sb.append("\tkey_mgmt=NONE\n");
+            } else if (i % 5 == 0) {
+                sb.append("\tkey_mgmt=NONE\n\twep_key0=\"wep").append(i).append("\"\n");
+            } else {
+                sb.append("\tpsk=\"secret-").append(i).append("\"\n\tkey_mgmt=WPA-PSK\n");
+            }
+            sb.append("\tpriority=").append(i).append("\n}\n");
+        }
+        return sb.toString().getBytes(UTF8);
+    }
+
+    /**
+     * Networks of a multi-site installation, a staff network with a hex PSK and a guest network
+     * with a passphrase per site.
+     *
+     * @param networks number of networks
+     * @return networks
+     */
+    static List<WifiPayload> sites(final int networks) {
+        final Random random = new Random(networks);
+        final ArrayList<WifiPayload> payloads = new ArrayList<>(networks);
+        for (int i = 0; i < networks; i++) {
+            final String site = "ACME-Store-" + (100 + i / 2);
+            if (i % 2 == 0) {
+                final StringBuilder psk = new StringBuilder(64);
+                for (int j = 0; j < 32; j++) {
+                    psk.append(String.format("%02x", random.nextInt(256)));
+                }
+                payloads.add(new WifiPayload(WifiPayload.TYPE_WPA, site + "-Staff", psk.toString(), false));
+            } else {
+                payloads.add(new WifiPayload(WifiPayload.TYPE_WPA, site + "-Guest", "welcome" + i, false));
+            }
+        }
+        return payloads;
+    }
+}
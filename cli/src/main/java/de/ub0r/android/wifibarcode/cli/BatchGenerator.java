@@ -0,0 +1,151 @@
+package de.ub0r.android.wifibarcode.cli;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.ub0r.android.wifibarcode.core.WifiPayload;
+
+/**
+ * Encode networks read from a {@link RecordReader} into PNG files on all cores.
+ * The input is read while encoding, at most a few records per thread are queued.
+ */
+final class BatchGenerator {
+
+    private final File mOutputDir;
+    private final int mScale;
+    private final int mThreads;
+
+    private final AtomicInteger mWritten = new AtomicInteger();
+    private final AtomicInteger mFailed = new AtomicInteger();
+
+    /**
+     * Per thread state, none of it is thread safe.
+     */
+    private static final class Worker {
+        final QRCodeWriter writer = new QRCodeWriter();
+        final Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        final PngEncoder png = new PngEncoder();
+        final StringBuilder content = new StringBuilder(64);
+
+        Worker() {
+            // same as the app
+            hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.L);
+        }
+    }
+
+    private static final ThreadLocal<Worker> WORKER = new ThreadLocal<Worker>() {
+        @Override
+        protected Worker initialValue() {
+            return new Worker();
+        }
+    };
+
+    /**
+     * @param outputDir directory to write PNGs to
+     * @param scale     pixels per module
+     * @param threads   number of worker threads
+     */
+    BatchGenerator(final File outputDir, final int scale, final int threads) {
+        mOutputDir = outputDir;
+        mScale = scale;
+        mThreads = threads;
+    }
+
+    int getWritten() {
+        return mWritten.get();
+    }
+
+    int getFailed() {
+        return mFailed.get();
+    }
+
+    /**
+     * Encode all records.
+     *
+     * @param reader {@link RecordReader}
+     */
+    void run(final RecordReader reader) throws IOException, InterruptedException {
+        // the caller encodes itself while the queue is full, which throttles reading
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(mThreads, mThreads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(mThreads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            NetworkRecord record;
+            while ((record = reader.next()) != null) {
+                final NetworkRecord r = record;
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        encode(r);
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void encode(final NetworkRecord record) {
+        final int type = WifiPayload.getType(record.type);
+        if (type == WifiPayload.TYPE_UNKNOWN) {
+            fail(record, "unknown type: " + record.type);
+            return;
+        }
+        final Worker worker = WORKER.get();
+        worker.content.setLength(0);
+        final String content = WifiPayload.build(worker.content, type, record.ssid, record.password)
+                .toString();
+        final File f = new File(mOutputDir, getFileName(record));
+        try {
+            final BitMatrix matrix = worker.writer.encode(content, BarcodeFormat.QR_CODE, 0, 0, worker.hints);
+            final OutputStream out = new BufferedOutputStream(new FileOutputStream(f));
+            try {
+                worker.png.encode(matrix, mScale, out);
+            } finally {
+                out.close();
+            }
+            mWritten.incrementAndGet();
+        } catch (WriterException | IOException e) {
+            fail(record, e.toString());
+        }
+    }
+
+    private void fail(final NetworkRecord record, final String message) {
+        mFailed.incrementAndGet();
+        System.err.println("record " + record.number + " (" + record.ssid + "): " + message);
+    }
+
+    /**
+     * @return record number and SSID with all unsafe chars replaced
+     */
+    private static String getFileName(final NetworkRecord record) {
+        final StringBuilder sb = new StringBuilder(record.ssid.length() + 12);
+        sb.append(String.format("%06d-", record.number));
+        for (int i = 0; i < record.ssid.length() && i < 64; i++) {
+            final char c = record.ssid.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.') {
+                sb.append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        return sb.append(".png").toString();
+    }
+}
@@ -0,0 +1,105 @@
+package de.ub0r.android.wifibarcode.cli;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read ssid,type,password rows from CSV.
+ * Fields may be quoted, quotes within quoted fields are doubled. A first row starting with
+ * "ssid" is treated as header.
+ */
+final class CsvRecordReader implements RecordReader {
+
+    private final Reader mReader;
+    private final StringBuilder mField = new StringBuilder();
+    private final List<String> mFields = new ArrayList<>(3);
+    private int mNumber = 0;
+    private boolean mHeaderSkipped = false;
+    private int mPushback = -2;
+
+    /**
+     * @param reader buffered {@link Reader}
+     */
+    CsvRecordReader(final Reader reader) {
+        mReader = reader;
+    }
+
+    @Override
+    public NetworkRecord next() throws IOException {
+        while (readRow()) {
+            if (mFields.size() == 1 && mFields.get(0).isEmpty()) {
+                // blank line
+                continue;
+            }
+            if (mNumber == 0 && !mHeaderSkipped && "ssid".equalsIgnoreCase(mFields.get(0).trim())) {
+                mHeaderSkipped = true;
+                continue;
+            }
+            ++mNumber;
+            if (mFields.size() < 2) {
+                throw new IOException("row " + mNumber + ": expected ssid,type,password");
+            }
+            return new NetworkRecord(mNumber, mFields.get(0), mFields.get(1).trim(),
+                    mFields.size() > 2 ? mFields.get(2) : "");
+        }
+        return null;
+    }
+
+    private int read() throws IOException {
+        if (mPushback != -2) {
+            final int c = mPushback;
+            mPushback = -2;
+            return c;
+        }
+        return mReader.read();
+    }
+
+    /**
+     * Read the next row into {@link #mFields}.
+     *
+     * @return false at the end of the input
+     */
+    private boolean readRow() throws IOException {
+        mFields.clear();
+        mField.setLength(0);
+        int c = read();
+        if (c < 0) {
+            return false;
+        }
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("row " + (mNumber + 1) + ": unterminated quote");
+                } else if (c == '"') {
+                    final int n = read();
+                    if (n == '"') {
+                        mField.append('"');
+                    } else {
+                        quoted = false;
+                        mPushback = n;
+                    }
+                } else {
+                    mField.append((char) c);
+                }
+            } else if (c < 0 || c == '\n') {
+                endField();
+                return true;
+            } else if (c == ',') {
+                endField();
+            } else if (c == '"' && mField.length() == 0) {
+                quoted = true;
+            } else if (c != '\r') {
+                mField.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private void endField() {
+        mFields.add(mField.toString());
+        mField.setLength(0);
+    }
+}
@@ -0,0 +1,172 @@
+package de.ub0r.android.wifibarcode.cli;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Read {"ssid": .., "type": .., "password": ..} objects from JSON.
+ * Accepts a top level array as well as one object per line. Objects are read one at a time,
+ * nested values are not supported.
+ */
+final class JsonRecordReader implements RecordReader {
+
+    private final Reader mReader;
+    private final StringBuilder mBuffer = new StringBuilder();
+    private int mNumber = 0;
+    private int mPushback = -2;
+
+    /**
+     * @param reader buffered {@link Reader}
+     */
+    JsonRecordReader(final Reader reader) {
+        mReader = reader;
+    }
+
+    @Override
+    public NetworkRecord next() throws IOException {
+        int c;
+        // skip array brackets and separators between objects
+        while ((c = readNonSpace()) == '[' || c == ']' || c == ',') {
+            // nothing to do
+        }
+        if (c < 0) {
+            return null;
+        }
+        ++mNumber;
+        if (c != '{') {
+            throw error("expected object");
+        }
+        String ssid = null;
+        String type = null;
+        String password = "";
+        c = readNonSpace();
+        while (c != '}') {
+            if (c != '"') {
+                throw error("expected key");
+            }
+            final String key = readString();
+            if (readNonSpace() != ':') {
+                throw error("expected ':'");
+            }
+            final String value = readValue();
+            if ("ssid".equals(key)) {
+                ssid = value;
+            } else if ("type".equals(key)) {
+                type = value;
+            } else if ("password".equals(key) && value != null) {
+                password = value;
+            }
+            c = readNonSpace();
+            if (c == ',') {
+                c = readNonSpace();
+            } else if (c != '}') {
+                throw error("expected ',' or '}'");
+            }
+        }
+        if (ssid == null || type == null) {
+            throw error("missing ssid or type");
+        }
+        return new NetworkRecord(mNumber, ssid, type, password);
+    }
+
+    private IOException error(final String message) {
+        return new IOException("object " + mNumber + ": " + message);
+    }
+
+    private int read() throws IOException {
+        if (mPushback != -2) {
+            final int c = mPushback;
+            mPushback = -2;
+            return c;
+        }
+        return mReader.read();
+    }
+
+    private int readNonSpace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+        return c;
+    }
+
+    /**
+     * Read a string, numeric or literal value.
+     *
+     * @return value as string, null for null
+     */
+    private String readValue() throws IOException {
+        int c = readNonSpace();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '{' || c == '[') {
+            throw error("nested values are not supported");
+        }
+        mBuffer.setLength(0);
+        while (c >= 0 && c != ',' && c != '}' && c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+            mBuffer.append((char) c);
+            c = read();
+        }
+        mPushback = c;
+        final String literal = mBuffer.toString();
+        if (literal.isEmpty()) {
+            throw error("expected value");
+        }
+        return "null".equals(literal) ? null : literal;
+    }
+
+    /**
+     * Read a string, the opening quote is already consumed.
+     */
+    private String readString() throws IOException {
+        mBuffer.setLength(0);
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw error("unterminated string");
+            } else if (c == '"') {
+                return mBuffer.toString();
+            } else if (c != '\\') {
+                mBuffer.append((char) c);
+                continue;
+            }
+            c = read();
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    mBuffer.append((char) c);
+                    break;
+                case 'b':
+                    mBuffer.append('\b');
+                    break;
+                case 'f':
+                    mBuffer.append('\f');
+                    break;
+                case 'n':
+                    mBuffer.append('\n');
+                    break;
+                case 'r':
+                    mBuffer.append('\r');
+                    break;
+                case 't':
+                    mBuffer.append('\t');
+                    break;
+                case 'u':
+                    int value = 0;
+                    for (int i = 0; i < 4; i++) {
+                        final int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw error("invalid unicode escape");
+                        }
+                        value = value << 4 | digit;
+                    }
+                    mBuffer.append((char) value);
+                    break;
+                default:
+                    throw error("invalid escape");
+            }
+        }
+    }
+}
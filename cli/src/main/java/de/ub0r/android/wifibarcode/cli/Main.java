@@ -0,0 +1,108 @@
+package de.ub0r.android.wifibarcode.cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Generate wifi barcodes from CSV or JSON on the command line.
+ */
+public final class Main {
+
+    private static final String USAGE = "usage: wifibarcode-cli [-o dir] [-s scale] [-t threads] "
+            + "[-f csv|json] file|-\n"
+            + "  -o dir      output directory, default: .\n"
+            + "  -s scale    pixels per module, default: 8\n"
+            + "  -t threads  worker threads, default: all cores\n"
+            + "  -f format   input format, default: by file extension, csv for stdin\n"
+            + "CSV rows are ssid,type,password; JSON objects have ssid, type and password keys.\n"
+            + "type is one of nopass/open, WEP or WPA/WPA2.";
+
+    private Main() {
+    }
+
+    public static void main(final String[] args) {
+        File outputDir = new File(".");
+        int scale = 8;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String format = null;
+        String input = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if ("-o".equals(arg)) {
+                    outputDir = new File(args[++i]);
+                } else if ("-s".equals(arg)) {
+                    scale = Integer.parseInt(args[++i]);
+                } else if ("-t".equals(arg)) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if ("-f".equals(arg)) {
+                    format = args[++i].toLowerCase(Locale.US);
+                } else if (input == null && (!arg.startsWith("-") || "-".equals(arg))) {
+                    input = arg;
+                } else {
+                    usage("unknown argument: " + arg);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            usage("invalid arguments");
+        }
+        if (input == null) {
+            usage("missing input file");
+        }
+        if (scale < 1 || threads < 1) {
+            usage("scale and threads must be positive");
+        }
+        if (format == null) {
+            final String name = input.toLowerCase(Locale.US);
+            format = name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson")
+                    ? "json" : "csv";
+        }
+        if (!"csv".equals(format) && !"json".equals(format)) {
+            usage("unknown format: " + format);
+        }
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("error creating directory: " + outputDir);
+            System.exit(1);
+        }
+
+        final BatchGenerator generator = new BatchGenerator(outputDir, scale, threads);
+        final long start = System.nanoTime();
+        try {
+            final InputStream in = "-".equals(input) ? System.in : new FileInputStream(input);
+            final Reader reader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")), 64 * 1024);
+            try {
+                generator.run("json".equals(format) ? new JsonRecordReader(reader) : new CsvRecordReader(reader));
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            System.err.println("error reading " + input + ": " + e.getMessage());
+            report(generator, start);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        report(generator, start);
+        System.exit(generator.getFailed() == 0 ? 0 : 1);
+    }
+
+    private static void report(final BatchGenerator generator, final long start) {
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        final int written = generator.getWritten();
+        System.err.println(String.format(Locale.US, "%d codes written, %d failed in %.2fs: %.0f codes/sec",
+                written, generator.getFailed(), seconds, seconds > 0 ? written / seconds : 0));
+    }
+
+    private static void usage(final String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
@@ -0,0 +1,26 @@
+package de.ub0r.android.wifibarcode.cli;
+
+/**
+ * Single network read from the input file.
+ */
+final class NetworkRecord {
+
+    /**
+     * Position in the input file, starting at 1.
+     */
+    final int number;
+    final String ssid;
+
+    /**
+     * Network type as found in the input file.
+     */
+    final String type;
+    final String password;
+
+    NetworkRecord(final int number, final String ssid, final String type, final String password) {
+        this.number = number;
+        this.ssid = ssid;
+        this.type = type;
+        this.password = password;
+    }
+}
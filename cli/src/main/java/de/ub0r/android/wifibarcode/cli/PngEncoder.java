@@ -0,0 +1,121 @@
+package de.ub0r.android.wifibarcode.cli;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Write a {@link BitMatrix} as 1-bit grayscale PNG, without going through an image library.
+ * Buffers and the {@link Deflater} are reused across calls. Not thread safe.
+ */
+final class PngEncoder {
+
+    private static final byte[] SIGNATURE = new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte[] IHDR = new byte[]{'I', 'H', 'D', 'R'};
+    private static final byte[] IDAT = new byte[]{'I', 'D', 'A', 'T'};
+    private static final byte[] IEND = new byte[]{'I', 'E', 'N', 'D'};
+
+    private final Deflater mDeflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 mCrc = new CRC32();
+    private final byte[] mHeader = new byte[13];
+    private final byte[] mInt = new byte[4];
+    private byte[] mRaw = new byte[0];
+    private byte[] mCompressed = new byte[0];
+
+    /**
+     * Encode the matrix.
+     *
+     * @param matrix {@link BitMatrix}, set bits are black
+     * @param scale  pixels per module
+     * @param out    {@link OutputStream}, not closed
+     */
+    void encode(final BitMatrix matrix, final int scale, final OutputStream out) throws IOException {
+        final int width = matrix.getWidth() * scale;
+        final int height = matrix.getHeight() * scale;
+        // filter type byte + 8 pixels per byte
+        final int stride = 1 + (width + 7) / 8;
+        final int rawLength = stride * height;
+        if (mRaw.length < rawLength) {
+            mRaw = new byte[rawLength];
+        }
+        final byte[] raw = mRaw;
+
+        int offset = 0;
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            final int rowStart = offset;
+            raw[offset++] = 0; // filter: none
+            int bits = 0;
+            int n = 0;
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                // 1 is white
+                final int bit = matrix.get(x, y) ? 0 : 1;
+                for (int i = 0; i < scale; i++) {
+                    bits = bits << 1 | bit;
+                    if (++n == 8) {
+                        raw[offset++] = (byte) bits;
+                        bits = 0;
+                        n = 0;
+                    }
+                }
+            }
+            if (n > 0) {
+                raw[offset++] = (byte) (bits << (8 - n));
+            }
+            for (int i = 1; i < scale; i++) {
+                System.arraycopy(raw, rowStart, raw, offset, stride);
+                offset += stride;
+            }
+        }
+
+        mDeflater.reset();
+        mDeflater.setInput(raw, 0, rawLength);
+        mDeflater.finish();
+        if (mCompressed.length < rawLength / 2 + 64) {
+            mCompressed = new byte[rawLength / 2 + 64];
+        }
+        int compressed = 0;
+        while (!mDeflater.finished()) {
+            if (compressed == mCompressed.length) {
+                final byte[] grown = new byte[mCompressed.length * 2];
+                System.arraycopy(mCompressed, 0, grown, 0, compressed);
+                mCompressed = grown;
+            }
+            compressed += mDeflater.deflate(mCompressed, compressed, mCompressed.length - compressed);
+        }
+
+        out.write(SIGNATURE);
+        putInt(mHeader, 0, width);
+        putInt(mHeader, 4, height);
+        mHeader[8] = 1; // bit depth
+        mHeader[9] = 0; // color type: grayscale
+        mHeader[10] = 0; // compression
+        mHeader[11] = 0; // filter
+        mHeader[12] = 0; // interlace
+        writeChunk(out, IHDR, mHeader, mHeader.length);
+        writeChunk(out, IDAT, mCompressed, compressed);
+        writeChunk(out, IEND, mHeader, 0);
+    }
+
+    private void writeChunk(final OutputStream out, final byte[] type, final byte[] data,
+                            final int length) throws IOException {
+        putInt(mInt, 0, length);
+        out.write(mInt);
+        out.write(type);
+        out.write(data, 0, length);
+        mCrc.reset();
+        mCrc.update(type);
+        mCrc.update(data, 0, length);
+        putInt(mInt, 0, (int) mCrc.getValue());
+        out.write(mInt);
+    }
+
+    private static void putInt(final byte[] buffer, final int offset, final int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
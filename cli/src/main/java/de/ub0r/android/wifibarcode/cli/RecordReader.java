@@ -0,0 +1,14 @@
+package de.ub0r.android.wifibarcode.cli;
+
+import java.io.IOException;
+
+/**
+ * Streaming reader of {@link NetworkRecord}s.
+ */
+interface RecordReader {
+
+    /**
+     * @return next record or null at the end of the input
+     */
+    NetworkRecord next() throws IOException;
+}
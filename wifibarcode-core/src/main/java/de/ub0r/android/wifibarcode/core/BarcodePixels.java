@@ -0,0 +1,45 @@
+package de.ub0r.android.wifibarcode.core;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Expand a {@link BitMatrix} into an ARGB pixel buffer.
+ * Pixel buffer and row buffer are reused across calls as long as the size does not change.
+ * Not thread safe.
+ */
+public final class BarcodePixels {
+
+    public static final int BLACK = 0xFF000000;
+    public static final int WHITE = 0xFFFFFFFF;
+
+    private int[] mPixels;
+    private BitArray mRow;
+
+    /**
+     * Render the matrix row by row.
+     *
+     * @param matrix {@link BitMatrix}
+     * @return pixels, width * height entries, overwritten by the next call
+     */
+    public int[] render(final BitMatrix matrix) {
+        final int width = matrix.getWidth();
+        final int height = matrix.getHeight();
+        if (mPixels == null || mPixels.length != width * height) {
+            mPixels = new int[width * height];
+        }
+        if (mRow == null || mRow.getSize() != width) {
+            mRow = new BitArray(width);
+        }
+
+        final int[] pixels = mPixels;
+        for (int y = 0; y < height; y++) {
+            final BitArray row = matrix.getRow(y, mRow);
+            final int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[offset + x] = row.get(x) ? BLACK : WHITE;
+            }
+        }
+        return pixels;
+    }
+}
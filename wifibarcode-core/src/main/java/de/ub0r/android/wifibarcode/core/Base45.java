@@ -0,0 +1,94 @@
+package de.ub0r.android.wifibarcode.core;
+
+/**
+ * Base45 as of RFC 9285.
+ * Uses QR's alphanumeric charset only, each two bytes take three characters.
+ */
+public final class Base45 {
+
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+    private static final int[] VALUES = new int[128];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = -1;
+        }
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            VALUES[ALPHABET.charAt(i)] = i;
+        }
+    }
+
+    private Base45() {
+    }
+
+    /**
+     * Encode bytes.
+     *
+     * @param sb    {@link StringBuilder} to append to
+     * @param bytes bytes
+     * @param off   offset
+     * @param len   number of bytes
+     * @return sb
+     */
+    public static StringBuilder encode(final StringBuilder sb, final byte[] bytes, final int off, final int len) {
+        final int end = off + len;
+        int i = off;
+        for (; i + 1 < end; i += 2) {
+            int n = ((bytes[i] & 0xff) << 8) | (bytes[i + 1] & 0xff);
+            sb.append(ALPHABET.charAt(n % 45));
+            n /= 45;
+            sb.append(ALPHABET.charAt(n % 45));
+            sb.append(ALPHABET.charAt(n / 45));
+        }
+        if (i < end) {
+            final int n = bytes[i] & 0xff;
+            sb.append(ALPHABET.charAt(n % 45));
+            sb.append(ALPHABET.charAt(n / 45));
+        }
+        return sb;
+    }
+
+    /**
+     * Decode characters.
+     *
+     * @param s     encoded text
+     * @param start index of the first character to decode
+     * @return bytes or null if s is not valid Base45
+     */
+    public static byte[] decode(final CharSequence s, final int start) {
+        final int length = s.length() - start;
+        if (length < 0 || length % 3 == 1) {
+            return null;
+        }
+        final byte[] bytes = new byte[length / 3 * 2 + (length % 3 == 2 ? 1 : 0)];
+        int j = 0;
+        for (int i = start; i < s.length(); i += 3) {
+            final int c = value(s.charAt(i));
+            final int d = value(s.charAt(i + 1));
+            if (c < 0 || d < 0) {
+                return null;
+            }
+            if (i + 2 < s.length()) {
+                final int e = value(s.charAt(i + 2));
+                final int n = c + d * 45 + e * 45 * 45;
+                if (e < 0 || n > 0xffff) {
+                    return null;
+                }
+                bytes[j++] = (byte) (n >> 8);
+                bytes[j++] = (byte) n;
+            } else {
+                final int n = c + d * 45;
+                if (n > 0xff) {
+                    return null;
+                }
+                bytes[j++] = (byte) n;
+            }
+        }
+        return bytes;
+    }
+
+    private static int value(final char c) {
+        return c < VALUES.length ? VALUES[c] : -1;
+    }
+}
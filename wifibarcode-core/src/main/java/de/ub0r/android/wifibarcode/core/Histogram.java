@@ -0,0 +1,90 @@
+package de.ub0r.android.wifibarcode.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with log-linear buckets, similar to HdrHistogram.
+ * Each power of two is split into {@link #SUB_BUCKETS} buckets, so recorded values are exact
+ * below {@link #SUB_BUCKETS} and within 12.5% above. Safe to record from any thread.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    static int getBucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return highest value in the bucket
+     */
+    static long getBucketLimit(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value value, negative values are recorded as 0
+     */
+    public void record(final long value) {
+        final long v = Math.max(0, value);
+        mBuckets.incrementAndGet(getBucket(v));
+        mCount.incrementAndGet();
+        mSum.addAndGet(v);
+        long max;
+        while (v > (max = mMax.get()) && !mMax.compareAndSet(max, v)) {
+            // retry
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getSum() {
+        return mSum.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * @param percentile percentile, 0 to 100
+     * @return upper bound of the value at the given percentile, 0 if empty
+     */
+    public long getPercentile(final double percentile) {
+        final long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= rank) {
+                return Math.min(getBucketLimit(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+}
@@ -0,0 +1,165 @@
+package de.ub0r.android.wifibarcode.core;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing spans and counters of the app's hot paths.
+ * Spans are measured with the monotonic clock and recorded into {@link Histogram}s.
+ * Recording is lock-free and cheap enough to stay enabled in release builds.
+ */
+public final class Metrics {
+
+    // spans
+    public static final String WIFI_CONFIGURED_NETWORKS = "wifi.getConfiguredNetworks";
+    public static final String ROOT_OPEN = "root.open";
+    public static final String ROOT_COMMAND = "root.command";
+    public static final String SECRETS_READ = "secrets.read";
+    public static final String SECRETS_PARSE_XML = "secrets.parse.xml";
+    public static final String SECRETS_SCAN_XML = "secrets.scan.xml";
+    public static final String SECRETS_PARSE_PLAIN = "secrets.parse.plain";
+    public static final String BARCODE_ENCODE = "barcode.encode";
+    public static final String STARTUP_NETWORK_LIST = "startup.networkList";
+    public static final String STARTUP_FIRST_DRAW = "startup.firstDraw";
+    public static final String STARTUP_FIRST_BARCODE = "startup.firstBarcode";
+
+    // counters
+    public static final String ROOT_FAILURES = "root.failures";
+    public static final String SECRETS_UNCHANGED = "secrets.unchanged";
+    public static final String SECRETS_VAULT_HITS = "secrets.vault.hits";
+    public static final String BARCODE_CACHE_HITS = "barcode.cache.hits";
+    public static final String BARCODE_CACHE_MISSES = "barcode.cache.misses";
+
+    private static final Metrics sInstance = new Metrics();
+
+    private final ConcurrentMap<String, Histogram> mHistograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> mCounters = new ConcurrentHashMap<>();
+
+    /**
+     * @return shared {@link Metrics}
+     */
+    public static Metrics getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Start a span.
+     *
+     * @return start time, pass to {@link #stop(String, long)}
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Stop a span and record its duration in the shared {@link Metrics}.
+     *
+     * @param name  span's name
+     * @param start value returned by {@link #start()}
+     */
+    public static void stop(final String name, final long start) {
+        sInstance.getHistogram(name).record(System.nanoTime() - start);
+    }
+
+    /**
+     * Increment a counter of the shared {@link Metrics}.
+     *
+     * @param name counter's name
+     */
+    public static void increment(final String name) {
+        sInstance.getCounter(name).incrementAndGet();
+    }
+
+    /**
+     * @param name histogram's name
+     * @return {@link Histogram} with durations in nanoseconds, created on first use
+     */
+    public Histogram getHistogram(final String name) {
+        Histogram h = mHistograms.get(name);
+        if (h == null) {
+            final Histogram created = new Histogram();
+            h = mHistograms.putIfAbsent(name, created);
+            if (h == null) {
+                h = created;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * @param name counter's name
+     * @return counter, created on first use
+     */
+    public AtomicLong getCounter(final String name) {
+        AtomicLong c = mCounters.get(name);
+        if (c == null) {
+            final AtomicLong created = new AtomicLong();
+            c = mCounters.putIfAbsent(name, created);
+            if (c == null) {
+                c = created;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Drop all recorded values.
+     */
+    public void reset() {
+        mHistograms.clear();
+        mCounters.clear();
+    }
+
+    /**
+     * Dump all histograms and counters as JSON.
+     * Durations are in microseconds, names are sorted.
+     *
+     * @return JSON object
+     */
+    public String toJson() {
+        final StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"spans\":{");
+        boolean first = true;
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(mHistograms).entrySet()) {
+            final Histogram h = e.getValue();
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendString(sb, e.getKey());
+            sb.append(":{\"count\":").append(h.getCount());
+            sb.append(",\"sum_us\":").append(h.getSum() / 1000);
+            sb.append(",\"p50_us\":").append(h.getPercentile(50) / 1000);
+            sb.append(",\"p90_us\":").append(h.getPercentile(90) / 1000);
+            sb.append(",\"p99_us\":").append(h.getPercentile(99) / 1000);
+            sb.append(",\"max_us\":").append(h.getMax() / 1000);
+            sb.append('}');
+        }
+        sb.append("},\"counters\":{");
+        first = true;
+        for (Map.Entry<String, AtomicLong> e : new TreeMap<>(mCounters).entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendString(sb, e.getKey());
+            sb.append(':').append(e.getValue().get());
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static void appendString(final StringBuilder sb, final String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,192 @@
+package de.ub0r.android.wifibarcode.core;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Split content too large for a single QR code into up to {@link #MAX_FRAMES} frames, shown one
+ * after another.
+ * Each frame reads WIFIM:id:index/total:chunk, where id is the CRC32 of the whole content in
+ * base 36 and index starts at 1. Header and packed chunks stay within QR's alphanumeric mode.
+ */
+public final class MultiFrame {
+
+    public static final String PREFIX = "WIFIM:";
+
+    /**
+     * Max. number of frames, as for QR structured append.
+     */
+    public static final int MAX_FRAMES = 16;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private MultiFrame() {
+    }
+
+    /**
+     * Split content into frames.
+     *
+     * @param content   content
+     * @param maxLength max. length of a chunk in chars
+     * @return frames or null if content needs more than {@link #MAX_FRAMES} frames
+     */
+    public static List<String> split(final String content, final int maxLength) {
+        final int length = content.length();
+        final int count = Math.max(1, (length + maxLength - 1) / maxLength);
+        if (count > MAX_FRAMES) {
+            return null;
+        }
+        // spread chars evenly, all frames get about the same QR version
+        final int chunk = (length + count - 1) / count;
+        final String id = getId(content);
+        final ArrayList<String> frames = new ArrayList<>(count);
+        int start = 0;
+        for (int i = 1; i <= count; i++) {
+            int end = i == count ? length : Math.min(length, start + chunk);
+            if (end < length && end > start && Character.isHighSurrogate(content.charAt(end - 1))) {
+                // do not split surrogate pairs
+                ++end;
+            }
+            frames.add(PREFIX + id + ':' + i + '/' + count + ':' + content.substring(start, end));
+            start = end;
+        }
+        return frames;
+    }
+
+    /**
+     * @param content content from qr code
+     * @return true, if content is a frame
+     */
+    public static boolean isFrame(final String content) {
+        return content != null && content.startsWith(PREFIX);
+    }
+
+    private static String getId(final String content) {
+        final CRC32 crc = new CRC32();
+        final byte[] bytes = content.getBytes(UTF8);
+        crc.update(bytes, 0, bytes.length);
+        return Long.toString(crc.getValue(), 36).toUpperCase(Locale.US);
+    }
+
+    /**
+     * Reassemble frames scanned in any order.
+     * Frames of another content start over, duplicates are ignored. Not thread safe.
+     */
+    public static final class Assembler {
+        private String mId;
+        private String[] mChunks;
+        private int mReceived;
+
+        /**
+         * Add a frame.
+         *
+         * @param frame content from qr code
+         * @return true, if the frame was valid
+         */
+        public boolean add(final String frame) {
+            if (!isFrame(frame)) {
+                return false;
+            }
+            final int idEnd = frame.indexOf(':', PREFIX.length());
+            final int slash = idEnd < 0 ? -1 : frame.indexOf('/', idEnd);
+            final int headerEnd = slash < 0 ? -1 : frame.indexOf(':', slash);
+            if (headerEnd < 0) {
+                return false;
+            }
+            final int index;
+            final int total;
+            try {
+                index = Integer.parseInt(frame.substring(idEnd + 1, slash));
+                total = Integer.parseInt(frame.substring(slash + 1, headerEnd));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (total < 1 || total > MAX_FRAMES || index < 1 || index > total) {
+                return false;
+            }
+
+            final String id = frame.substring(PREFIX.length(), idEnd);
+            if (!id.equals(mId) || mChunks.length != total) {
+                mId = id;
+                mChunks = new String[total];
+                mReceived = 0;
+            }
+            if (mChunks[index - 1] == null) {
+                mChunks[index - 1] = frame.substring(headerEnd + 1);
+                ++mReceived;
+                if (isComplete() && !mId.equals(getId(getContent()))) {
+                    // mixed up frames, start over
+                    reset();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return number of distinct frames received
+         */
+        public int getReceived() {
+            return mReceived;
+        }
+
+        /**
+         * @return number of frames, 0 if none was received yet
+         */
+        public int getTotal() {
+            return mChunks == null ? 0 : mChunks.length;
+        }
+
+        /**
+         * @return true, if all frames were received
+         */
+        public boolean isComplete() {
+            return mChunks != null && mReceived == mChunks.length;
+        }
+
+        /**
+         * Get the frames received so far, e.g. to save state. Add them to a new
+         * {@link Assembler} to restore it.
+         *
+         * @return received frames
+         */
+        public ArrayList<String> getFrames() {
+            final ArrayList<String> frames = new ArrayList<>(mReceived);
+            if (mChunks == null) {
+                return frames;
+            }
+            for (int i = 0; i < mChunks.length; i++) {
+                if (mChunks[i] != null) {
+                    frames.add(PREFIX + mId + ':' + (i + 1) + '/' + mChunks.length + ':' + mChunks[i]);
+                }
+            }
+            return frames;
+        }
+
+        /**
+         * @return reassembled content, null if not complete
+         */
+        public String getContent() {
+            if (!isComplete()) {
+                return null;
+            }
+            final StringBuilder sb = new StringBuilder();
+            for (String chunk : mChunks) {
+                sb.append(chunk);
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Drop all frames.
+         */
+        public void reset() {
+            mId = null;
+            mChunks = null;
+            mReceived = 0;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package de.ub0r.android.wifibarcode.core;
+
+/**
+ * Single network of a secrets file: a network={...} block of wpa_supplicant.conf or a
+ * WifiConfiguration element of WifiConfigStore.xml.
+ */
+public final class NetworkBlock {
+
+    /**
+     * SSID as found in WifiConfiguration.SSID: quoted text, or hex if it is not valid UTF-8 text.
+     */
+    public String ssid;
+
+    /**
+     * SSID as found in the file, quoted or hex.
+     */
+    public String rawSsid;
+
+    /**
+     * Passphrase without quotes, or raw hex PSK.
+     */
+    public String psk;
+    public boolean pskHex;
+
+    /**
+     * wep_key0..3 or WEPKeys without quotes, or hex.
+     */
+    public final String[] wepKeys = new String[4];
+    public final boolean[] wepKeysHex = new boolean[4];
+    public int wepTxKeyIndex;
+
+    /**
+     * Space separated key management names, wpa_supplicant style.
+     */
+    public String keyMgmt;
+    public int priority;
+
+    /**
+     * scan_ssid or HiddenSSID, set for hidden networks.
+     */
+    public boolean hidden;
+
+    /**
+     * @return the key used to connect: the WEP tx key or the PSK, null for open networks
+     */
+    public String getSecret() {
+        final String wepKey = getWepKey();
+        return wepKey != null ? wepKey : psk;
+    }
+
+    /**
+     * @return {@link SsidSecretIndex.KeyType} matching {@link #getSecret()}
+     */
+    public SsidSecretIndex.KeyType getKeyType() {
+        if (getWepKey() != null) {
+            return SsidSecretIndex.KeyType.WEP;
+        }
+        return psk != null ? SsidSecretIndex.KeyType.PSK : SsidSecretIndex.KeyType.NONE;
+    }
+
+    private String getWepKey() {
+        final int i = wepTxKeyIndex >= 0 && wepTxKeyIndex < wepKeys.length ? wepTxKeyIndex : 0;
+        return wepKeys[i];
+    }
+
+    /**
+     * Set SSID from its value in the file.
+     *
+     * @param raw    value as found in the file
+     * @param quoted true if raw is a quoted string
+     */
+    void setSsid(final String raw, final boolean quoted) {
+        rawSsid = raw;
+        ssid = quoted ? raw : WifiStrings.decodeHexSsid(raw);
+    }
+}
@@ -0,0 +1,366 @@
+package de.ub0r.android.wifibarcode.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compact barcode content for many networks.
+ * The networks are packed into a versioned binary record, carried as Base45 behind
+ * {@link #PREFIX}. The whole content stays within QR's alphanumeric mode.
+ * Layout of version 1:
+ * <pre>
+ * version        byte
+ * count          varint
+ * per network:
+ *   flags        byte, bits 0-2 type, 7 for unknown, 3 hidden, 4 password, 5 hex password,
+ *                6 upper case hex, 7 EAP fields
+ *   prefix       varint, distance back to a network sharing a prefix of the SSID, 0 for none
+ *   prefixLength varint, in chars, only if prefix > 0
+ *   ssid         rest of the SSID as string
+ *   password     string, raw bytes for hex passwords, only with bit 4
+ *   eap          byte with one bit per field, followed by E, A, I and PH2 as strings, only with bit 7
+ * crc            CRC32 of all bytes above, 4 bytes big endian
+ * </pre>
+ * Strings are written as varint length followed by UTF-8.
+ */
+public final class PackedPayload {
+
+    public static final String PREFIX = "WIFIB:";
+
+    static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int TYPE_MASK = 0x07;
+    private static final int TYPE_UNKNOWN = 0x07;
+    private static final int FLAG_HIDDEN = 0x08;
+    private static final int FLAG_PASSWORD = 0x10;
+    private static final int FLAG_HEX = 0x20;
+    private static final int FLAG_HEX_UPPER = 0x40;
+    private static final int FLAG_EAP = 0x80;
+
+    /**
+     * Shorter prefixes cost more than they save.
+     */
+    private static final int MIN_PREFIX = 3;
+
+    /**
+     * Thrown when the content does not look like expected.
+     */
+    private static final class MalformedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        MalformedException(final String message) {
+            super(message);
+        }
+    }
+
+    private PackedPayload() {
+    }
+
+    /**
+     * Pack networks.
+     *
+     * @param payloads networks
+     * @return barcode's content
+     */
+    public static String encode(final List<WifiPayload> payloads) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(VERSION);
+        writeVarint(out, payloads.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            final WifiPayload p = payloads.get(i);
+            final String ssid = p.ssid == null ? "" : p.ssid;
+            final int hex = getHexCase(p.password);
+
+            int flags = p.type < 0 || p.type >= TYPE_MASK ? TYPE_UNKNOWN : p.type;
+            if (p.hidden) {
+                flags |= FLAG_HIDDEN;
+            }
+            if (p.password != null) {
+                flags |= FLAG_PASSWORD | hex;
+            }
+            final boolean eap = p.eapMethod != null || p.anonymousIdentity != null || p.identity != null
+                    || p.phase2Method != null;
+            if (eap) {
+                flags |= FLAG_EAP;
+            }
+            out.write(flags);
+
+            // longest prefix shared with any network before
+            int prefix = 0;
+            int prefixLength = MIN_PREFIX - 1;
+            for (int j = i - 1; j >= 0; j--) {
+                final String other = payloads.get(j).ssid;
+                final int l = other == null ? 0 : getCommonPrefix(ssid, other);
+                if (l > prefixLength) {
+                    prefix = i - j;
+                    prefixLength = l;
+                }
+            }
+            writeVarint(out, prefix);
+            if (prefix > 0) {
+                writeVarint(out, prefixLength);
+                writeString(out, ssid.substring(prefixLength));
+            } else {
+                writeString(out, ssid);
+            }
+
+            if (p.password != null) {
+                if (hex != 0) {
+                    final byte[] bytes = new byte[p.password.length() / 2];
+                    for (int j = 0; j < bytes.length; j++) {
+                        bytes[j] = (byte) Integer.parseInt(p.password.substring(2 * j, 2 * j + 2), 16);
+                    }
+                    writeVarint(out, bytes.length);
+                    out.write(bytes, 0, bytes.length);
+                } else {
+                    writeString(out, p.password);
+                }
+            }
+
+            if (eap) {
+                final String[] fields = new String[]{p.eapMethod, p.anonymousIdentity, p.identity,
+                        p.phase2Method};
+                int mask = 0;
+                for (int j = 0; j < fields.length; j++) {
+                    if (fields[j] != null) {
+                        mask |= 1 << j;
+                    }
+                }
+                out.write(mask);
+                for (String f : fields) {
+                    if (f != null) {
+                        writeString(out, f);
+                    }
+                }
+            }
+        }
+
+        final CRC32 crc = new CRC32();
+        final byte[] bytes = out.toByteArray();
+        crc.update(bytes, 0, bytes.length);
+        final long value = crc.getValue();
+        out.write((int) (value >> 24));
+        out.write((int) (value >> 16));
+        out.write((int) (value >> 8));
+        out.write((int) value);
+
+        final byte[] packed = out.toByteArray();
+        final StringBuilder sb = new StringBuilder(PREFIX.length() + (packed.length * 3 + 1) / 2);
+        sb.append(PREFIX);
+        return Base45.encode(sb, packed, 0, packed.length).toString();
+    }
+
+    /**
+     * Unpack networks.
+     *
+     * @param content content from qr code
+     * @return networks or null if content is not a valid packed payload
+     */
+    public static List<WifiPayload> decode(final String content) {
+        if (content == null || !content.startsWith(PREFIX)) {
+            return null;
+        }
+        final byte[] bytes = Base45.decode(content, PREFIX.length());
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return decode(bytes);
+        } catch (MalformedException e) {
+            return null;
+        }
+    }
+
+    private static List<WifiPayload> decode(final byte[] bytes) throws MalformedException {
+        final int length = bytes.length - 4;
+        if (length < 2) {
+            throw new MalformedException("too short");
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        final long expected = ((bytes[length] & 0xffL) << 24) | ((bytes[length + 1] & 0xffL) << 16)
+                | ((bytes[length + 2] & 0xffL) << 8) | (bytes[length + 3] & 0xffL);
+        if (crc.getValue() != expected) {
+            throw new MalformedException("invalid crc");
+        }
+
+        final Input in = new Input(bytes, length);
+        if (in.readByte() != VERSION) {
+            throw new MalformedException("unknown version");
+        }
+        final int count = in.readVarint();
+        if (count > length) {
+            throw new MalformedException("invalid count: " + count);
+        }
+        final ArrayList<WifiPayload> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int flags = in.readByte();
+            final int type = flags & TYPE_MASK;
+
+            final int prefix = in.readVarint();
+            final String ssid;
+            if (prefix > 0) {
+                if (prefix > i) {
+                    throw new MalformedException("invalid prefix: " + prefix);
+                }
+                final String other = payloads.get(i - prefix).ssid;
+                final int prefixLength = in.readVarint();
+                if (prefixLength > other.length()) {
+                    throw new MalformedException("invalid prefix length: " + prefixLength);
+                }
+                ssid = other.substring(0, prefixLength) + in.readString();
+            } else {
+                ssid = in.readString();
+            }
+
+            String password = null;
+            if ((flags & FLAG_PASSWORD) != 0) {
+                if ((flags & FLAG_HEX) != 0) {
+                    password = toHex(in.readBytes(), (flags & FLAG_HEX_UPPER) != 0);
+                } else {
+                    password = in.readString();
+                }
+            }
+
+            final String[] fields = new String[4];
+            if ((flags & FLAG_EAP) != 0) {
+                final int mask = in.readByte();
+                for (int j = 0; j < fields.length; j++) {
+                    if ((mask & (1 << j)) != 0) {
+                        fields[j] = in.readString();
+                    }
+                }
+            }
+            payloads.add(new WifiPayload(type == TYPE_UNKNOWN ? WifiPayload.TYPE_UNKNOWN : type, ssid,
+                    password, (flags & FLAG_HIDDEN) != 0, fields[0], fields[1], fields[2], fields[3]));
+        }
+        if (in.remaining() != 0) {
+            throw new MalformedException("trailing bytes");
+        }
+        return payloads;
+    }
+
+    /**
+     * @return FLAG_HEX, optionally with FLAG_HEX_UPPER, if password can be stored as raw bytes, 0
+     * otherwise
+     */
+    private static int getHexCase(final String password) {
+        if (password == null || password.length() == 0 || password.length() % 2 != 0) {
+            return 0;
+        }
+        boolean lower = false;
+        boolean upper = false;
+        for (int i = 0; i < password.length(); i++) {
+            final char c = password.charAt(i);
+            if (c >= 'a' && c <= 'f') {
+                lower = true;
+            } else if (c >= 'A' && c <= 'F') {
+                upper = true;
+            } else if (c < '0' || c > '9') {
+                return 0;
+            }
+        }
+        if (lower && upper) {
+            return 0;
+        }
+        return upper ? FLAG_HEX | FLAG_HEX_UPPER : FLAG_HEX;
+    }
+
+    private static String toHex(final byte[] bytes, final boolean upper) {
+        final String digits = upper ? "0123456789ABCDEF" : "0123456789abcdef";
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = digits.charAt((bytes[i] >> 4) & 0x0f);
+            chars[2 * i + 1] = digits.charAt(bytes[i] & 0x0f);
+        }
+        return new String(chars);
+    }
+
+    private static int getCommonPrefix(final String a, final String b) {
+        final int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            ++i;
+        }
+        if (i > 0 && i < a.length() && Character.isHighSurrogate(a.charAt(i - 1))) {
+            // do not split surrogate pairs
+            --i;
+        }
+        return i;
+    }
+
+    private static void writeVarint(final ByteArrayOutputStream out, final int value) {
+        int v = value;
+        while ((v & ~0x7f) != 0) {
+            out.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static void writeString(final ByteArrayOutputStream out, final String s) {
+        final byte[] bytes = s.getBytes(UTF8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Bounds checked reader over the packed bytes.
+     */
+    private static final class Input {
+        private final byte[] mBytes;
+        private final int mLimit;
+        private int mPos = 0;
+
+        Input(final byte[] bytes, final int limit) {
+            mBytes = bytes;
+            mLimit = limit;
+        }
+
+        int remaining() {
+            return mLimit - mPos;
+        }
+
+        int readByte() throws MalformedException {
+            if (mPos >= mLimit) {
+                throw new MalformedException("truncated");
+            }
+            return mBytes[mPos++] & 0xff;
+        }
+
+        int readVarint() throws MalformedException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                final int b = readByte();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new MalformedException("invalid varint");
+        }
+
+        byte[] readBytes() throws MalformedException {
+            final int length = readVarint();
+            if (length > remaining()) {
+                throw new MalformedException("truncated");
+            }
+            final byte[] bytes = new byte[length];
+            System.arraycopy(mBytes, mPos, bytes, 0, length);
+            mPos += length;
+            return bytes;
+        }
+
+        String readString() throws MalformedException {
+            return new String(readBytes(), UTF8);
+        }
+    }
+}
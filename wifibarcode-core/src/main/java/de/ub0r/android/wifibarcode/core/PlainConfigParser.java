@@ -0,0 +1,37 @@
+package de.ub0r.android.wifibarcode.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Parse wpa_supplicant.conf.
+ */
+public class PlainConfigParser {
+
+    /**
+     * Read all networks from wpa_supplicant.conf in a single pass.
+     *
+     * @param in input stream, closed when done
+     * @return {@link SsidSecretIndex} holding all networks found
+     */
+    public SsidSecretIndex parse(final InputStream in) throws IOException {
+        final SsidSecretIndex index = new SsidSecretIndex();
+        final Reader reader = new InputStreamReader(in, "UTF-8");
+        try {
+            final PlainConfigTokenizer tokenizer = new PlainConfigTokenizer(reader);
+            NetworkBlock block;
+            while ((block = tokenizer.next()) != null) {
+                final String secret = block.getSecret();
+                final SsidSecretIndex.KeyType keyType = block.getKeyType();
+                index.put(block.ssid, secret, keyType);
+                // older Android versions report hex SSIDs as found in the file
+                index.put(block.rawSsid, secret, keyType);
+            }
+        } finally {
+            reader.close();
+        }
+        return index;
+    }
+}
@@ -0,0 +1,193 @@
+package de.ub0r.android.wifibarcode.core;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming tokenizer for wpa_supplicant.conf.
+ * Reads the file in a single pass and emits one {@link NetworkBlock} per network={...} block.
+ * Memory use is bounded by the read buffer and {@link #MAX_LINE}, longer lines are truncated.
+ */
+public final class PlainConfigTokenizer {
+
+    /**
+     * Max. number of chars kept per line.
+     */
+    static final int MAX_LINE = 4096;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[2048];
+    private int mPos = 0;
+    private int mLength = 0;
+    private final StringBuilder mLine = new StringBuilder(128);
+
+    /**
+     * @param reader {@link Reader}, not closed by the tokenizer
+     */
+    public PlainConfigTokenizer(final Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Read the next network block. Blocks without SSID are skipped.
+     *
+     * @return {@link NetworkBlock} or null at the end of the file
+     */
+    public NetworkBlock next() throws IOException {
+        NetworkBlock block = null;
+        while (readLine()) {
+            final StringBuilder line = mLine;
+            int start = 0;
+            int end = line.length();
+            while (start < end && isSpace(line.charAt(start))) {
+                ++start;
+            }
+            while (end > start && isSpace(line.charAt(end - 1))) {
+                --end;
+            }
+            if (start == end || line.charAt(start) == '#') {
+                continue;
+            }
+
+            if (block == null) {
+                if (regionEquals(start, end, "network={")) {
+                    block = new NetworkBlock();
+                }
+            } else if (line.charAt(start) == '}') {
+                if (block.ssid != null) {
+                    return block;
+                }
+                block = null;
+            } else {
+                final int eq = indexOf('=', start, end);
+                if (eq > start) {
+                    setField(block, start, eq, eq + 1, end);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void setField(final NetworkBlock block, final int keyStart, final int keyEnd,
+                          final int valueStart, final int valueEnd) {
+        final StringBuilder line = mLine;
+        int vs = valueStart;
+        int ve = valueEnd;
+        boolean quoted = false;
+        if (vs < ve && line.charAt(vs) == '"') {
+            final int q = lastIndexOf('"', vs + 1, ve);
+            if (q > vs) {
+                quoted = true;
+                ++vs;
+                ve = q;
+            }
+        }
+
+        if (regionEquals(keyStart, keyEnd, "ssid")) {
+            block.setSsid(quoted ? line.substring(vs - 1, ve + 1) : line.substring(vs, ve), quoted);
+        } else if (regionEquals(keyStart, keyEnd, "psk")) {
+            block.psk = line.substring(vs, ve);
+            block.pskHex = !quoted;
+        } else if (keyEnd - keyStart == 8 && regionEquals(keyStart, keyEnd - 1, "wep_key")) {
+            final int i = line.charAt(keyEnd - 1) - '0';
+            if (i >= 0 && i < block.wepKeys.length) {
+                block.wepKeys[i] = line.substring(vs, ve);
+                block.wepKeysHex[i] = !quoted;
+            }
+        } else if (regionEquals(keyStart, keyEnd, "wep_tx_keyidx")) {
+            block.wepTxKeyIndex = parseInt(vs, ve);
+        } else if (regionEquals(keyStart, keyEnd, "key_mgmt")) {
+            block.keyMgmt = line.substring(vs, ve);
+        } else if (regionEquals(keyStart, keyEnd, "priority")) {
+            block.priority = parseInt(vs, ve);
+        } else if (regionEquals(keyStart, keyEnd, "scan_ssid")) {
+            block.hidden = parseInt(vs, ve) != 0;
+        }
+    }
+
+    /**
+     * Read the next line into {@link #mLine}.
+     *
+     * @return false at the end of the file
+     */
+    private boolean readLine() throws IOException {
+        mLine.setLength(0);
+        boolean read = false;
+        while (true) {
+            if (mPos >= mLength) {
+                mLength = mReader.read(mBuffer, 0, mBuffer.length);
+                mPos = 0;
+                if (mLength <= 0) {
+                    mLength = 0;
+                    return read;
+                }
+            }
+            read = true;
+            final char[] buffer = mBuffer;
+            int i = mPos;
+            final int length = mLength;
+            while (i < length && buffer[i] != '\n') {
+                ++i;
+            }
+            final int n = Math.min(i - mPos, MAX_LINE - mLine.length());
+            if (n > 0) {
+                mLine.append(buffer, mPos, n);
+            }
+            if (i < length) {
+                mPos = i + 1;
+                return true;
+            }
+            mPos = length;
+        }
+    }
+
+    private boolean regionEquals(final int start, final int end, final String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (mLine.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(final char c, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (mLine.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int lastIndexOf(final char c, final int start, final int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (mLine.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int parseInt(final int start, final int end) {
+        int value = 0;
+        boolean negative = false;
+        for (int i = start; i < end; i++) {
+            final char c = mLine.charAt(i);
+            if (i == start && c == '-') {
+                negative = true;
+            } else if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            } else {
+                return 0;
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isSpace(final char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
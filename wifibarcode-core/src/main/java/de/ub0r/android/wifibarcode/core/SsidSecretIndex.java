@@ -0,0 +1,114 @@
+package de.ub0r.android.wifibarcode.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of wifi secrets keyed by the raw (quoted) SSID as found in the secrets file.
+ * Built in a single pass over the file and queried per configured network.
+ */
+public final class SsidSecretIndex {
+
+    /**
+     * Type of secret stored for a network.
+     */
+    public enum KeyType {
+        NONE, WEP, PSK
+    }
+
+    /**
+     * Single indexed network.
+     */
+    public static final class Entry {
+        public final String secret;
+        public final KeyType keyType;
+
+        Entry(final String secret, final KeyType keyType) {
+            this.secret = secret;
+            this.keyType = keyType;
+        }
+    }
+
+    private final HashMap<String, Entry> mEntries = new HashMap<>();
+
+    /**
+     * Add a network to the index. The first entry for a SSID wins.
+     *
+     * @param ssid    SSID as stored in the secrets file
+     * @param secret  secret, may be null
+     * @param keyType {@link KeyType}
+     */
+    public void put(final String ssid, final String secret, final KeyType keyType) {
+        if (ssid == null || mEntries.containsKey(ssid)) {
+            return;
+        }
+        mEntries.put(ssid, new Entry(secret, keyType));
+    }
+
+    /**
+     * @param ssid SSID as returned by WifiConfiguration.SSID
+     * @return {@link Entry} or null
+     */
+    public Entry get(final String ssid) {
+        return ssid == null ? null : mEntries.get(ssid);
+    }
+
+    /**
+     * @param ssid SSID as returned by WifiConfiguration.SSID
+     * @return secret or null
+     */
+    public String getSecret(final String ssid) {
+        final Entry e = get(ssid);
+        return e == null ? null : e.secret;
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Write the index in a compact binary form, see {@link #readFrom(DataInput)}.
+     *
+     * @param out {@link DataOutput}
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(mEntries.size());
+        for (Map.Entry<String, Entry> e : mEntries.entrySet()) {
+            final Entry entry = e.getValue();
+            out.writeUTF(e.getKey());
+            out.writeByte(entry.keyType.ordinal());
+            out.writeBoolean(entry.secret != null);
+            if (entry.secret != null) {
+                out.writeUTF(entry.secret);
+            }
+        }
+    }
+
+    /**
+     * Read an index written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in {@link DataInput}
+     * @return {@link SsidSecretIndex}
+     */
+    public static SsidSecretIndex readFrom(final DataInput in) throws IOException {
+        final KeyType[] keyTypes = KeyType.values();
+        final int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("invalid size: " + size);
+        }
+        final SsidSecretIndex index = new SsidSecretIndex();
+        for (int i = 0; i < size; i++) {
+            final String ssid = in.readUTF();
+            final int keyType = in.readUnsignedByte();
+            if (keyType >= keyTypes.length) {
+                throw new IOException("invalid key type: " + keyType);
+            }
+            final String secret = in.readBoolean() ? in.readUTF() : null;
+            index.put(ssid, secret, keyTypes[keyType]);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,371 @@
+package de.ub0r.android.wifibarcode.core;
+
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Build and parse the WIFI: barcode content.
+ * Format as understood by ZXing: WIFI:T:WPA;S:ssid;P:password;H:true;; where \ ; , : and " in
+ * values are escaped with a backslash. Supports the EAP fields E, A, I and PH2.
+ * A bundle holds several records, optionally separated by whitespace.
+ */
+public final class WifiPayload {
+
+    public static final int TYPE_UNKNOWN = -1;
+    public static final int TYPE_OPEN = 0;
+    public static final int TYPE_WEP = 1;
+    public static final int TYPE_WPA = 2;
+    public static final int TYPE_SAE = 3;
+    public static final int TYPE_WPA2_EAP = 4;
+
+    private static final String PREFIX = "WIFI:";
+
+    /**
+     * Value of the T: field by type.
+     */
+    private static final String[] TYPES = new String[]{"nopass", "WEP", "WPA", "SAE", "WPA2-EAP"};
+
+    /**
+     * Network type, one of TYPE_*.
+     */
+    public final int type;
+    public final String ssid;
+    public final String password;
+    public final boolean hidden;
+
+    /**
+     * EAP method, e.g. PEAP or TTLS.
+     */
+    public final String eapMethod;
+    public final String anonymousIdentity;
+    public final String identity;
+
+    /**
+     * Phase 2 method, e.g. MSCHAPV2.
+     */
+    public final String phase2Method;
+
+    /**
+     * @param type     network type, one of TYPE_*
+     * @param ssid     SSID
+     * @param password password, may be null
+     * @param hidden   true for hidden networks
+     */
+    public WifiPayload(final int type, final String ssid, final String password, final boolean hidden) {
+        this(type, ssid, password, hidden, null, null, null, null);
+    }
+
+    /**
+     * @param type              network type, one of TYPE_*
+     * @param ssid              SSID
+     * @param password          password, may be null
+     * @param hidden            true for hidden networks
+     * @param eapMethod         EAP method, may be null
+     * @param anonymousIdentity anonymous identity, may be null
+     * @param identity          identity, may be null
+     * @param phase2Method      phase 2 method, may be null
+     */
+    public WifiPayload(final int type, final String ssid, final String password, final boolean hidden,
+                       final String eapMethod, final String anonymousIdentity, final String identity,
+                       final String phase2Method) {
+        this.type = type;
+        this.ssid = ssid;
+        this.password = password;
+        this.hidden = hidden;
+        this.eapMethod = eapMethod;
+        this.anonymousIdentity = anonymousIdentity;
+        this.identity = identity;
+        this.phase2Method = phase2Method;
+    }
+
+    /**
+     * Build barcode content.
+     *
+     * @param type     network type, one of TYPE_*
+     * @param ssid     SSID
+     * @param password password, ignored for open networks
+     * @return barcode's content
+     */
+    public static String build(final int type, final CharSequence ssid, final CharSequence password) {
+        return build(new StringBuilder(), type, ssid, password).toString();
+    }
+
+    /**
+     * Append barcode content to a reusable {@link StringBuilder}.
+     *
+     * @param sb       {@link StringBuilder} to append to
+     * @param type     network type, one of TYPE_*
+     * @param ssid     SSID
+     * @param password password, ignored for open networks
+     * @return sb
+     */
+    public static StringBuilder build(final StringBuilder sb, final int type, final CharSequence ssid,
+                                      final CharSequence password) {
+        sb.append(PREFIX);
+        appendType(sb, type);
+        appendField(sb, "S:", ssid);
+        appendPassword(sb, type, password);
+        return sb.append(';');
+    }
+
+    /**
+     * Append barcode content including all optional fields.
+     *
+     * @param sb {@link StringBuilder} to append to
+     * @return sb
+     */
+    public StringBuilder appendTo(final StringBuilder sb) {
+        sb.append(PREFIX);
+        appendType(sb, type);
+        appendField(sb, "S:", ssid);
+        appendPassword(sb, type, password);
+        if (hidden) {
+            sb.append("H:true;");
+        }
+        if (type == TYPE_WPA2_EAP) {
+            appendField(sb, "E:", eapMethod);
+            appendField(sb, "A:", anonymousIdentity);
+            appendField(sb, "I:", identity);
+            appendField(sb, "PH2:", phase2Method);
+        }
+        return sb.append(';');
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    private static void appendType(final StringBuilder sb, final int type) {
+        // TYPE_UNKNOWN from parsing an unknown T: field, leave it out
+        if (type >= 0 && type < TYPES.length) {
+            sb.append("T:").append(TYPES[type]).append(';');
+        }
+    }
+
+    private static void appendPassword(final StringBuilder sb, final int type, final CharSequence password) {
+        if (type == TYPE_OPEN) {
+            sb.append("P:nopass;");
+        } else {
+            appendField(sb, "P:", password == null ? "" : password);
+        }
+    }
+
+    private static void appendField(final StringBuilder sb, final String key, final CharSequence value) {
+        if (value == null) {
+            return;
+        }
+        sb.append(key);
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == ';' || c == ',' || c == ':' || c == '"') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        sb.append(';');
+    }
+
+    /**
+     * Look up a network type by name, ignoring case.
+     *
+     * @param name value of the T: field, "open" or "WPA2"
+     * @return one of TYPE_*, TYPE_UNKNOWN if name is unknown
+     */
+    public static int getType(final String name) {
+        if (name == null) {
+            return TYPE_UNKNOWN;
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        if ("open".equalsIgnoreCase(name)) {
+            return TYPE_OPEN;
+        } else if ("WPA2".equalsIgnoreCase(name)) {
+            return TYPE_WPA;
+        }
+        return TYPE_UNKNOWN;
+    }
+
+    /**
+     * Build a bundle of several networks.
+     *
+     * @param payloads networks
+     * @return barcode's content
+     */
+    public static String buildAll(final List<WifiPayload> payloads) {
+        final StringBuilder sb = new StringBuilder();
+        for (WifiPayload p : payloads) {
+            p.appendTo(sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parse barcode content in a single pass.
+     * Unknown fields are ignored, the first occurrence of a field wins. Values enclosed in
+     * unescaped double quotes are unquoted. The record ends with an empty field, anything
+     * after it is ignored.
+     *
+     * @param result content from qr code
+     * @return {@link WifiPayload} or null if result is not a WIFI: barcode
+     */
+    public static WifiPayload parse(final String result) {
+        if (result == null) {
+            return null;
+        }
+        return parse(result, new ParsePosition(0));
+    }
+
+    /**
+     * Parse a bundle of records.
+     *
+     * @param result content from qr code
+     * @return all records or null if result is not a bundle of WIFI: records
+     */
+    public static List<WifiPayload> parseAll(final String result) {
+        if (result == null) {
+            return null;
+        }
+        final ArrayList<WifiPayload> payloads = new ArrayList<>();
+        final ParsePosition position = new ParsePosition(0);
+        final int length = result.length();
+        while (true) {
+            int pos = position.getIndex();
+            while (pos < length && Character.isWhitespace(result.charAt(pos))) {
+                ++pos;
+            }
+            if (pos >= length) {
+                break;
+            }
+            position.setIndex(pos);
+            final WifiPayload payload = parse(result, position);
+            if (payload == null) {
+                return null;
+            }
+            payloads.add(payload);
+        }
+        return payloads.isEmpty() ? null : payloads;
+    }
+
+    /**
+     * Parse a single record.
+     *
+     * @param result   content from qr code
+     * @param position start of the record, set to the end of the record on return
+     * @return {@link WifiPayload} or null if there is no WIFI: record at position
+     */
+    private static WifiPayload parse(final String result, final ParsePosition position) {
+        if (!result.startsWith(PREFIX, position.getIndex())) {
+            position.setErrorIndex(position.getIndex());
+            return null;
+        }
+
+        String type = null;
+        String ssid = null;
+        String password = null;
+        String hidden = null;
+        String eapMethod = null;
+        String anonymousIdentity = null;
+        String identity = null;
+        String phase2Method = null;
+
+        final int length = result.length();
+        final StringBuilder value = new StringBuilder();
+        int pos = position.getIndex() + PREFIX.length();
+        while (pos < length) {
+            // key
+            final int keyStart = pos;
+            while (pos < length && result.charAt(pos) != ':' && result.charAt(pos) != ';') {
+                ++pos;
+            }
+            if (pos >= length) {
+                break;
+            }
+            if (result.charAt(pos) == ';') {
+                if (pos == keyStart) {
+                    // empty field, the terminating ;;
+                    ++pos;
+                    break;
+                }
+                // key without value
+                ++pos;
+                continue;
+            }
+            final int keyEnd = pos++;
+
+            // value
+            value.setLength(0);
+            final boolean quoted = pos < length && result.charAt(pos) == '"';
+            if (quoted) {
+                ++pos;
+            }
+            boolean closingQuote = false;
+            while (pos < length) {
+                char c = result.charAt(pos++);
+                if (c == ';') {
+                    break;
+                }
+                boolean unescapedQuote = false;
+                if (c == '\\' && pos < length) {
+                    c = result.charAt(pos++);
+                } else if (c == '"') {
+                    unescapedQuote = true;
+                }
+                value.append(c);
+                closingQuote = unescapedQuote;
+            }
+            if (quoted) {
+                if (closingQuote) {
+                    value.setLength(value.length() - 1);
+                } else {
+                    // not enclosed in quotes, keep the leading quote
+                    value.insert(0, '"');
+                }
+            }
+
+            final int keyLength = keyEnd - keyStart;
+            if (keyLength == 1) {
+                switch (result.charAt(keyStart)) {
+                    case 'T':
+                        type = type == null ? value.toString() : type;
+                        break;
+                    case 'S':
+                        ssid = ssid == null ? value.toString() : ssid;
+                        break;
+                    case 'P':
+                        password = password == null ? value.toString() : password;
+                        break;
+                    case 'H':
+                        hidden = hidden == null ? value.toString() : hidden;
+                        break;
+                    case 'E':
+                        eapMethod = eapMethod == null ? value.toString() : eapMethod;
+                        break;
+                    case 'A':
+                        anonymousIdentity = anonymousIdentity == null ? value.toString() : anonymousIdentity;
+                        break;
+                    case 'I':
+                        identity = identity == null ? value.toString() : identity;
+                        break;
+                    default:
+                        break;
+                }
+            } else if (phase2Method == null && result.startsWith("PH2", keyStart) && keyLength == 3) {
+                phase2Method = value.toString();
+            }
+        }
+
+        position.setIndex(pos);
+        final int t = getType(type);
+        if (t == TYPE_OPEN && "nopass".equals(password)) {
+            password = null;
+        }
+        return new WifiPayload(t, ssid, password, "true".equalsIgnoreCase(hidden),
+                eapMethod, anonymousIdentity, identity, phase2Method);
+    }
+}
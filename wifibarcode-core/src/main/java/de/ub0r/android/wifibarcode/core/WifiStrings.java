@@ -0,0 +1,103 @@
+package de.ub0r.android.wifibarcode.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Helpers for quoted strings as used by WifiConfiguration and the secrets files.
+ */
+public final class WifiStrings {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private WifiStrings() {
+    }
+
+    /**
+     * Encloses the incoming string inside double quotes, if it isn't already quoted.
+     *
+     * @param string : the input string
+     * @return a quoted string, of the form "input". If the input string is null, it returns null as
+     * well.
+     */
+    public static String convertToQuotedString(final String string) {
+        if (string == null) {
+            return null;
+        }
+        if (string.length() == 0) {
+            return "";
+        }
+        int lastPos = string.length() - 1;
+        if (string.charAt(0) == '"' && string.charAt(lastPos) == '"') {
+            return string;
+        }
+        return '\"' + string + '\"';
+    }
+
+    /**
+     * Remove enclosing double quotes.
+     *
+     * @param text quoted or unquoted string, may be null
+     * @return text without enclosing double quotes
+     */
+    public static String stripQuotes(final String text) {
+        if (text != null && text.length() >= 2
+                && text.charAt(0) == '"' && text.charAt(text.length() - 1) == '"') {
+            return text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+
+    /**
+     * wpa_supplicant writes SSIDs with non printable chars as hex. Android shows them quoted if
+     * they are valid UTF-8.
+     *
+     * @param hex SSID as hex string
+     * @return quoted SSID or hex if it is not valid UTF-8 text
+     */
+    public static String decodeHexSsid(final String hex) {
+        final int len = hex.length();
+        if (len == 0 || len % 2 != 0) {
+            return hex;
+        }
+        final byte[] bytes = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            final int hi = Character.digit(hex.charAt(i), 16);
+            final int lo = Character.digit(hex.charAt(i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                return hex;
+            }
+            bytes[i / 2] = (byte) ((hi << 4) | lo);
+        }
+        final String text;
+        try {
+            text = UTF8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            return hex;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isISOControl(text.charAt(i))) {
+                return hex;
+            }
+        }
+        return '"' + text + '"';
+    }
+
+    /**
+     * Get the SSID as shown to the user.
+     *
+     * @param ssid SSID as found in WifiConfiguration.SSID, quoted or hex
+     * @return SSID without quotes, hex SSIDs are decoded if they are valid UTF-8 text
+     */
+    public static String getDisplaySsid(final String ssid) {
+        if (ssid == null || ssid.length() == 0 || ssid.charAt(0) == '"') {
+            return stripQuotes(ssid);
+        }
+        return stripQuotes(decodeHexSsid(ssid));
+    }
+}
@@ -0,0 +1,211 @@
+package de.ub0r.android.wifibarcode.core;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parse WifiConfigStore.xml.
+ * Needs an XmlPullParser implementation, which is part of the Android platform.
+ */
+public class XmlConfigParser {
+
+    private static final String ns = null;
+
+    /**
+     * Names of WifiConfiguration.KeyMgmt bits, wpa_supplicant style.
+     */
+    private static final String[] KEY_MGMT = new String[]{"NONE", "WPA-PSK", "WPA-EAP", "IEEE8021X",
+            "WPA2-PSK", "OSEN", "FT-PSK", "FT-EAP", "SAE", "OWE", "SUITE-B-192", "WPA-PSK-SHA256",
+            "WPA-EAP-SHA256"};
+
+    private static XmlPullParserFactory sFactory;
+
+    private static synchronized XmlPullParser newPullParser() throws XmlPullParserException {
+        if (sFactory == null) {
+            sFactory = XmlPullParserFactory.newInstance();
+        }
+        return sFactory.newPullParser();
+    }
+
+    /**
+     * Read all networks from WifiConfigStore.xml in a single pass.
+     *
+     * @param in input stream, closed when done
+     * @return {@link SsidSecretIndex} holding all networks found
+     */
+    public SsidSecretIndex parse(final InputStream in) throws XmlPullParserException, IOException {
+        final SsidSecretIndex index = new SsidSecretIndex();
+        for (NetworkBlock block : parseAll(in).values()) {
+            index.put(block.ssid, block.getSecret(), block.getKeyType());
+        }
+        return index;
+    }
+
+    /**
+     * Read all networks from WifiConfigStore.xml in a single pass.
+     * Only WifiConfiguration elements are read, everything else is skipped.
+     *
+     * @param in input stream, closed when done
+     * @return {@link NetworkBlock}s by SSID, in file order
+     */
+    public Map<String, NetworkBlock> parseAll(final InputStream in) throws XmlPullParserException, IOException {
+        final Map<String, NetworkBlock> networks = new LinkedHashMap<>();
+        try {
+            XmlPullParser parser = newPullParser();
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            parser.setInput(in, null);
+
+            int type;
+            while ((type = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (type != XmlPullParser.START_TAG) {
+                    continue;
+                }
+                final String name = parser.getName();
+                if ("WifiConfiguration".equals(name)) {
+                    final NetworkBlock block = readNetwork(parser);
+                    if (block.ssid != null && !networks.containsKey(block.ssid)) {
+                        networks.put(block.ssid, block);
+                    }
+                } else if (!"WifiConfigStoreData".equals(name) && !"NetworkList".equals(name)
+                        && !"Network".equals(name)) {
+                    // NetworkStatus, IpConfiguration, ...
+                    skip(parser);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return networks;
+    }
+
+    private NetworkBlock readNetwork(XmlPullParser parser) throws XmlPullParserException, IOException {
+        final int depth = parser.getDepth();
+        final NetworkBlock block = new NetworkBlock();
+
+        int type;
+        while ((type = parser.next()) != XmlPullParser.END_DOCUMENT
+                && (type != XmlPullParser.END_TAG || parser.getDepth() > depth)) {
+            if (type != XmlPullParser.START_TAG) {
+                continue;
+            }
+            String name = parser.getName();
+            final String nameAttribute = parser.getAttributeValue(ns, "name");
+            if ("string".equals(name) && "SSID".equals(nameAttribute)) {
+                // already in WifiConfiguration.SSID format
+                block.ssid = readString(parser);
+                block.rawSsid = block.ssid;
+            } else if ("string".equals(name) && "PreSharedKey".equals(nameAttribute)) {
+                final String psk = readString(parser);
+                block.psk = WifiStrings.stripQuotes(psk);
+                block.pskHex = psk.equals(block.psk);
+            } else if ("string-array".equals(name) && "WEPKeys".equals(nameAttribute)) {
+                readWepKeys(parser, block);
+            } else if ("int".equals(name) && "WEPTxKeyIndex".equals(nameAttribute)) {
+                block.wepTxKeyIndex = parseInt(parser.getAttributeValue(ns, "value"));
+                skip(parser);
+            } else if ("int".equals(name) && "Priority".equals(nameAttribute)) {
+                block.priority = parseInt(parser.getAttributeValue(ns, "value"));
+                skip(parser);
+            } else if ("boolean".equals(name) && "HiddenSSID".equals(nameAttribute)) {
+                block.hidden = "true".equals(parser.getAttributeValue(ns, "value"));
+                skip(parser);
+            } else if ("byte-array".equals(name) && "AllowedKeyMgmt".equals(nameAttribute)) {
+                block.keyMgmt = readKeyMgmt(parser);
+            } else {
+                skip(parser);
+            }
+        }
+        return block;
+    }
+
+    private String readString(XmlPullParser parser) throws IOException, XmlPullParserException {
+        parser.require(XmlPullParser.START_TAG, ns, "string");
+        String text = readText(parser);
+        parser.require(XmlPullParser.END_TAG, ns, "string");
+        return text;
+    }
+
+    private String readText(XmlPullParser parser) throws IOException, XmlPullParserException {
+        String result = "";
+        if (parser.next() == XmlPullParser.TEXT) {
+            result = parser.getText();
+            parser.nextTag();
+        }
+        return result;
+    }
+
+    private void readWepKeys(XmlPullParser parser, final NetworkBlock block) throws IOException, XmlPullParserException {
+        final int depth = parser.getDepth();
+        int i = 0;
+        int type;
+        while ((type = parser.next()) != XmlPullParser.END_DOCUMENT
+                && (type != XmlPullParser.END_TAG || parser.getDepth() > depth)) {
+            if (type == XmlPullParser.START_TAG && "item".equals(parser.getName())
+                    && i < block.wepKeys.length) {
+                final String value = parser.getAttributeValue(ns, "value");
+                if (value != null && value.length() > 0) {
+                    block.wepKeys[i] = WifiStrings.stripQuotes(value);
+                    block.wepKeysHex[i] = value.equals(block.wepKeys[i]);
+                }
+                ++i;
+            }
+        }
+    }
+
+    /**
+     * AllowedKeyMgmt is a hex encoded BitSet of WifiConfiguration.KeyMgmt values.
+     */
+    private String readKeyMgmt(XmlPullParser parser) throws IOException, XmlPullParserException {
+        final String hex = readText(parser);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i + 1 < hex.length(); i += 2) {
+            final int b = Character.digit(hex.charAt(i), 16) << 4 | Character.digit(hex.charAt(i + 1), 16);
+            for (int bit = 0; bit < 8; bit++) {
+                final int k = (i / 2) * 8 + bit;
+                if ((b & (1 << bit)) != 0 && k < KEY_MGMT.length) {
+                    if (sb.length() > 0) {
+                        sb.append(' ');
+                    }
+                    sb.append(KEY_MGMT[k]);
+                }
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    private static int parseInt(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void skip(final XmlPullParser parser) throws XmlPullParserException, IOException {
+        if (parser.getEventType() != XmlPullParser.START_TAG) {
+            throw new IllegalStateException();
+        }
+        int depth = 1;
+        while (depth != 0) {
+            switch (parser.next()) {
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    return;
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package de.ub0r.android.wifibarcode.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Fast path for WifiConfigStore.xml as written by the Android framework.
+ * Scans the raw UTF-8 bytes for SSID, PreSharedKey and WEPKeys and decodes only those spans.
+ * Everything else, e.g. IpConfiguration and NetworkStatus, is never decoded.
+ * Returns null on anything unexpected, use {@link XmlConfigParser} in that case.
+ */
+public final class XmlConfigScanner {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte[] ROOT = bytes("<WifiConfigStoreData>");
+    private static final byte[] CONFIG_START = bytes("<WifiConfiguration");
+    private static final byte[] CONFIG_END = bytes("</WifiConfiguration>");
+    private static final byte[] SSID = bytes("<string name=\"SSID\">");
+    private static final byte[] PSK = bytes("<string name=\"PreSharedKey\">");
+    private static final byte[] STRING_END = bytes("</string>");
+    private static final byte[] WEP_KEYS = bytes("<string-array name=\"WEPKeys\"");
+    private static final byte[] STRING_ARRAY_END = bytes("</string-array>");
+    private static final byte[] ITEM = bytes("<item value=\"");
+    private static final byte[] WEP_TX_KEY_INDEX = bytes("<int name=\"WEPTxKeyIndex\" value=\"");
+
+    /**
+     * Thrown when the file does not look like expected.
+     */
+    private static final class MalformedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        MalformedException(final String message) {
+            super(message);
+        }
+    }
+
+    private final CharsetDecoder mDecoder = UTF8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+    private String mError;
+
+    private static byte[] bytes(final String s) {
+        return s.getBytes(UTF8);
+    }
+
+    /**
+     * @return reason why the last call to {@link #scan(ByteBuffer)} returned null
+     */
+    public String getError() {
+        return mError;
+    }
+
+    /**
+     * Read all networks from WifiConfigStore.xml.
+     *
+     * @param buffer file's content, from position 0 to its limit
+     * @return {@link SsidSecretIndex} holding all networks found, or null if the file was not
+     * understood
+     */
+    public SsidSecretIndex scan(final ByteBuffer buffer) {
+        mError = null;
+        try {
+            return scan(buffer, buffer.limit());
+        } catch (MalformedException e) {
+            mError = e.getMessage();
+            return null;
+        }
+    }
+
+    private SsidSecretIndex scan(final ByteBuffer buffer, final int limit) throws MalformedException {
+        if (indexOf(buffer, ROOT, 0, limit) < 0) {
+            throw new MalformedException("no WifiConfigStoreData");
+        }
+        final SsidSecretIndex index = new SsidSecretIndex();
+        int pos = 0;
+        while ((pos = indexOf(buffer, CONFIG_START, pos, limit)) >= 0) {
+            final int start = pos + CONFIG_START.length;
+            if (start >= limit || buffer.get(start) != '>') {
+                throw new MalformedException("unexpected WifiConfiguration tag at " + pos);
+            }
+            final int end = indexOf(buffer, CONFIG_END, start, limit);
+            if (end < 0 || indexOf(buffer, CONFIG_START, start, end) >= 0) {
+                throw new MalformedException("unterminated WifiConfiguration at " + pos);
+            }
+            final NetworkBlock block = scanNetwork(buffer, start + 1, end);
+            index.put(block.ssid, block.getSecret(), block.getKeyType());
+            pos = end + CONFIG_END.length;
+        }
+        return index;
+    }
+
+    private NetworkBlock scanNetwork(final ByteBuffer buffer, final int start, final int end)
+            throws MalformedException {
+        final NetworkBlock block = new NetworkBlock();
+        block.ssid = readString(buffer, SSID, start, end);
+        if (block.ssid == null) {
+            throw new MalformedException("no SSID at " + start);
+        }
+        block.rawSsid = block.ssid;
+
+        final String psk = readString(buffer, PSK, start, end);
+        if (psk != null) {
+            block.psk = WifiStrings.stripQuotes(psk);
+            block.pskHex = psk.equals(block.psk);
+        }
+
+        int pos = indexOf(buffer, WEP_KEYS, start, end);
+        if (pos >= 0) {
+            pos = indexOf(buffer, '>', pos + WEP_KEYS.length, end);
+            if (pos < 0) {
+                throw new MalformedException("unterminated WEPKeys at " + start);
+            }
+            if (buffer.get(pos - 1) != '/') {
+                final int arrayEnd = indexOf(buffer, STRING_ARRAY_END, pos, end);
+                if (arrayEnd < 0) {
+                    throw new MalformedException("unterminated WEPKeys at " + pos);
+                }
+                int i = 0;
+                while (i < block.wepKeys.length
+                        && (pos = indexOf(buffer, ITEM, pos, arrayEnd)) >= 0) {
+                    pos += ITEM.length;
+                    final int valueEnd = indexOf(buffer, '"', pos, arrayEnd);
+                    if (valueEnd < 0) {
+                        throw new MalformedException("unterminated WEPKeys item at " + pos);
+                    }
+                    if (valueEnd > pos) {
+                        final String value = decode(buffer, pos, valueEnd);
+                        block.wepKeys[i] = WifiStrings.stripQuotes(value);
+                        block.wepKeysHex[i] = value.equals(block.wepKeys[i]);
+                    }
+                    pos = valueEnd + 1;
+                    ++i;
+                }
+            }
+        }
+
+        pos = indexOf(buffer, WEP_TX_KEY_INDEX, start, end);
+        if (pos >= 0) {
+            pos += WEP_TX_KEY_INDEX.length;
+            final int valueEnd = indexOf(buffer, '"', pos, end);
+            if (valueEnd < 0) {
+                throw new MalformedException("unterminated WEPTxKeyIndex at " + pos);
+            }
+            block.wepTxKeyIndex = parseInt(buffer, pos, valueEnd);
+        }
+        return block;
+    }
+
+    /**
+     * Read the text of a string element.
+     *
+     * @return text or null if there is no such element
+     */
+    private String readString(final ByteBuffer buffer, final byte[] tag, final int start, final int end)
+            throws MalformedException {
+        int pos = indexOf(buffer, tag, start, end);
+        if (pos < 0) {
+            return null;
+        }
+        pos += tag.length;
+        final int textEnd = indexOf(buffer, STRING_END, pos, end);
+        if (textEnd < 0) {
+            throw new MalformedException("unterminated string at " + pos);
+        }
+        return decode(buffer, pos, textEnd);
+    }
+
+    /**
+     * Decode UTF-8 bytes and resolve XML entities.
+     */
+    private String decode(final ByteBuffer buffer, final int start, final int end)
+            throws MalformedException {
+        final ByteBuffer span = buffer.duplicate();
+        span.limit(end);
+        span.position(start);
+        final String text;
+        try {
+            text = mDecoder.decode(span).toString();
+        } catch (CharacterCodingException e) {
+            throw new MalformedException("invalid UTF-8 at " + start);
+        }
+        if (text.indexOf('&') < 0) {
+            if (text.indexOf('<') >= 0) {
+                throw new MalformedException("markup in text at " + start);
+            }
+            return text;
+        }
+        return unescape(text, start);
+    }
+
+    private static String unescape(final String text, final int offset) throws MalformedException {
+        final int length = text.length();
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c == '<') {
+                throw new MalformedException("markup in text at " + offset);
+            }
+            if (c != '&') {
+                sb.append(c);
+                continue;
+            }
+            final int semicolon = text.indexOf(';', i);
+            if (semicolon < 0) {
+                throw new MalformedException("unterminated entity at " + offset);
+            }
+            final String entity = text.substring(i + 1, semicolon);
+            if ("quot".equals(entity)) {
+                sb.append('"');
+            } else if ("amp".equals(entity)) {
+                sb.append('&');
+            } else if ("lt".equals(entity)) {
+                sb.append('<');
+            } else if ("gt".equals(entity)) {
+                sb.append('>');
+            } else if ("apos".equals(entity)) {
+                sb.append('\'');
+            } else if (entity.length() > 1 && entity.charAt(0) == '#') {
+                try {
+                    final int codePoint = entity.charAt(1) == 'x'
+                            ? Integer.parseInt(entity.substring(2), 16)
+                            : Integer.parseInt(entity.substring(1));
+                    sb.appendCodePoint(codePoint);
+                } catch (IllegalArgumentException e) {
+                    throw new MalformedException("invalid entity at " + offset);
+                }
+            } else {
+                throw new MalformedException("unknown entity at " + offset);
+            }
+            i = semicolon;
+        }
+        return sb.toString();
+    }
+
+    private static int parseInt(final ByteBuffer buffer, final int start, final int end)
+            throws MalformedException {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final int b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                throw new MalformedException("invalid number at " + start);
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static int indexOf(final ByteBuffer buffer, final char c, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(final ByteBuffer buffer, final byte[] pattern, final int start, final int end) {
+        final byte first = pattern[0];
+        final int last = end - pattern.length;
+        outer:
+        for (int i = start; i <= last; i++) {
+            if (buffer.get(i) != first) {
+                continue;
+            }
+            for (int j = 1; j < pattern.length; j++) {
+                if (buffer.get(i + j) != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,63 @@
+package de.ub0r.android.wifibarcode.core;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class Base45Test {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static String encode(final byte[] bytes) {
+        return Base45.encode(new StringBuilder(), bytes, 0, bytes.length).toString();
+    }
+
+    @Test
+    public void rfcVectors() {
+        assertEquals("BB8", encode("AB".getBytes(UTF8)));
+        assertEquals("%69 VD92EX0", encode("Hello!!".getBytes(UTF8)));
+        assertEquals("UJCLQE7W581", encode("base-45".getBytes(UTF8)));
+        assertArrayEquals("ietf!".getBytes(UTF8), Base45.decode("QED8WEX0", 0));
+    }
+
+    @Test
+    public void roundTrip() {
+        final Random random = new Random(42);
+        for (int length = 0; length < 64; length++) {
+            final byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            assertArrayEquals(bytes, Base45.decode(encode(bytes), 0));
+        }
+        final byte[] extremes = new byte[]{0, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff};
+        assertArrayEquals(extremes, Base45.decode(encode(extremes), 0));
+    }
+
+    @Test
+    public void encodeRange() {
+        final byte[] bytes = "xxABxx".getBytes(UTF8);
+        assertEquals("pre:BB8", Base45.encode(new StringBuilder("pre:"), bytes, 2, 2).toString());
+    }
+
+    @Test
+    public void decodeStart() {
+        assertArrayEquals("AB".getBytes(UTF8), Base45.decode("WIFIB:BB8", 6));
+    }
+
+    @Test
+    public void decodeInvalid() {
+        // truncated, a single char carries no byte
+        assertNull(Base45.decode("BB8B", 0));
+        // not in the alphabet
+        assertNull(Base45.decode("bb8", 0));
+        assertNull(Base45.decode("B\u00e48", 0));
+        // above 0xffff and 0xff
+        assertNull(Base45.decode("GGW", 0));
+        assertNull(Base45.decode("::", 0));
+        assertNull(Base45.decode("BB8", 4));
+    }
+}
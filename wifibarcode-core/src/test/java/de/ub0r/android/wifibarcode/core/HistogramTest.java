@@ -0,0 +1,102 @@
+package de.ub0r.android.wifibarcode.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void exactBelowSubBuckets() {
+        for (int v = 0; v < Histogram.SUB_BUCKETS; v++) {
+            assertEquals(v, Histogram.getBucket(v));
+            assertEquals(v, Histogram.getBucketLimit(v));
+        }
+    }
+
+    @Test
+    public void bucketBoundaries() {
+        assertEquals(8, Histogram.getBucket(8));
+        assertEquals(15, Histogram.getBucket(15));
+        assertEquals(16, Histogram.getBucket(16));
+        assertEquals(16, Histogram.getBucket(17));
+        assertEquals(17, Histogram.getBucket(18));
+        assertEquals(17, Histogram.getBucketLimit(16));
+
+        final int last = Histogram.getBucket(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, Histogram.getBucketLimit(last));
+        for (int b = 0; b < last; b++) {
+            final long limit = Histogram.getBucketLimit(b);
+            assertEquals(b, Histogram.getBucket(limit));
+            assertEquals(b + 1, Histogram.getBucket(limit + 1));
+        }
+    }
+
+    @Test
+    public void relativeError() {
+        for (long v = 1; v > 0 && v < Long.MAX_VALUE / 3; v = v * 3 + 1) {
+            final long limit = Histogram.getBucketLimit(Histogram.getBucket(v));
+            assertTrue(v + " -> " + limit, limit >= v);
+            assertTrue(v + " -> " + limit, limit - v <= v / Histogram.SUB_BUCKETS);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        final Histogram h = new Histogram();
+        assertEquals(0, h.getPercentile(50));
+        for (int v = 1; v <= 100; v++) {
+            h.record(v);
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(5050, h.getSum());
+        assertEquals(100, h.getMax());
+        assertEquals(1, h.getPercentile(0));
+        assertEquals(1, h.getPercentile(1));
+        // 50 is in bucket 48..51
+        assertEquals(51, h.getPercentile(50));
+        // 99 is in bucket 96..103, capped at the max
+        assertEquals(100, h.getPercentile(99));
+        assertEquals(100, h.getPercentile(100));
+    }
+
+    @Test
+    public void max() {
+        final Histogram h = new Histogram();
+        h.record(-5);
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getPercentile(100));
+        h.record(1000);
+        h.record(3);
+        assertEquals(1000, h.getMax());
+        assertEquals(1003, h.getSum());
+        assertEquals(1000, h.getPercentile(100));
+        h.record(Long.MAX_VALUE / 2);
+        assertEquals(Long.MAX_VALUE / 2, h.getMax());
+        assertEquals(Long.MAX_VALUE / 2, h.getPercentile(100));
+    }
+
+    @Test
+    public void concurrentRecord() throws InterruptedException {
+        final Histogram h = new Histogram();
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int offset = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int v = 0; v < 10000; v++) {
+                        h.record(v + offset);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(40000, h.getCount());
+        assertEquals(9999 + threads.length - 1, h.getMax());
+    }
+}
@@ -0,0 +1,75 @@
+package de.ub0r.android.wifibarcode.core;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MultiFrameTest {
+
+    private static final String CONTENT = "WIFI:T:WPA;S:first;P:secret;;WIFI:T:WEP;S:second;P:abcde;;";
+
+    @Test
+    public void splitAndAssemble() {
+        final List<String> frames = MultiFrame.split(CONTENT, 16);
+        assertEquals(4, frames.size());
+        final MultiFrame.Assembler assembler = new MultiFrame.Assembler();
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            assertTrue(assembler.add(frames.get(i)));
+            // duplicates are ignored
+            assertTrue(assembler.add(frames.get(i)));
+        }
+        assertTrue(assembler.isComplete());
+        assertEquals(CONTENT, assembler.getContent());
+    }
+
+    @Test
+    public void tooManyFrames() {
+        assertNull(MultiFrame.split(CONTENT, 2));
+    }
+
+    @Test
+    public void restoreFromFrames() {
+        final List<String> frames = MultiFrame.split(CONTENT, 16);
+        final MultiFrame.Assembler assembler = new MultiFrame.Assembler();
+        assertEquals(0, assembler.getFrames().size());
+        assembler.add(frames.get(2));
+        assembler.add(frames.get(0));
+
+        final MultiFrame.Assembler restored = new MultiFrame.Assembler();
+        for (String frame : assembler.getFrames()) {
+            assertTrue(restored.add(frame));
+        }
+        assertEquals(2, restored.getReceived());
+        assertEquals(4, restored.getTotal());
+        assertFalse(restored.isComplete());
+
+        restored.add(frames.get(1));
+        restored.add(frames.get(3));
+        assertEquals(CONTENT, restored.getContent());
+    }
+
+    @Test
+    public void otherContentStartsOver() {
+        final MultiFrame.Assembler assembler = new MultiFrame.Assembler();
+        assembler.add(MultiFrame.split(CONTENT, 16).get(0));
+        assembler.add(MultiFrame.split(CONTENT + "x", 16).get(0));
+        assertEquals(1, assembler.getReceived());
+        assertEquals(1, assembler.getFrames().size());
+    }
+
+    @Test
+    public void invalidFrames() {
+        final MultiFrame.Assembler assembler = new MultiFrame.Assembler();
+        assertFalse(assembler.add("WIFI:S:x;;"));
+        assertFalse(assembler.add("WIFIM:ID:0/2:x"));
+        assertFalse(assembler.add("WIFIM:ID:3/2:x"));
+        assertFalse(assembler.add("WIFIM:ID:a/2:x"));
+        assertFalse(assembler.add("WIFIM:ID"));
+        assertEquals(0, assembler.getTotal());
+    }
+}
@@ -0,0 +1,136 @@
+package de.ub0r.android.wifibarcode.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PackedPayloadTest {
+
+    private static List<WifiPayload> networks() {
+        return Arrays.asList(
+                new WifiPayload(WifiPayload.TYPE_WPA, "home", "secret", false),
+                new WifiPayload(WifiPayload.TYPE_OPEN, "cafe", null, false),
+                new WifiPayload(WifiPayload.TYPE_WEP, "home-5GHz", "0123456789", true),
+                new WifiPayload(WifiPayload.TYPE_WPA, "home-guest", "ABCDEF0123456789", false),
+                new WifiPayload(WifiPayload.TYPE_WPA, "mixed", "aBcDeF01", false),
+                new WifiPayload(WifiPayload.TYPE_SAE, "\ud83d\udcf6\ud83d\udcf6 net", "p\u00e4ss;\\", false),
+                new WifiPayload(WifiPayload.TYPE_SAE, "\ud83d\udcf6\ud83d\udcf7", "odd", false),
+                new WifiPayload(WifiPayload.TYPE_UNKNOWN, "unknown", "x", false),
+                new WifiPayload(WifiPayload.TYPE_WPA2_EAP, "corp", "pw", false, "PEAP", "anon", "user", "MSCHAPV2"),
+                new WifiPayload(WifiPayload.TYPE_WPA2_EAP, "corp-2", "", true, "TTLS", null, "user", null),
+                new WifiPayload(WifiPayload.TYPE_WPA, "", "empty ssid", false));
+    }
+
+    private static void assertPayloads(final List<WifiPayload> expected, final List<WifiPayload> actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            // same content, including case of hex passwords and all fields
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+            assertEquals(expected.get(i).type, actual.get(i).type);
+            assertEquals(expected.get(i).password, actual.get(i).password);
+        }
+    }
+
+    /**
+     * Append the CRC and encode, as {@link PackedPayload#encode(List)} does.
+     */
+    private static String pack(final int... values) {
+        final byte[] bytes = new byte[values.length + 4];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, values.length);
+        final long value = crc.getValue();
+        for (int i = 0; i < 4; i++) {
+            bytes[values.length + i] = (byte) (value >> (24 - 8 * i));
+        }
+        return Base45.encode(new StringBuilder(PackedPayload.PREFIX), bytes, 0, bytes.length).toString();
+    }
+
+    @Test
+    public void roundTrip() {
+        final List<WifiPayload> payloads = networks();
+        final String content = PackedPayload.encode(payloads);
+        assertTrue(content.startsWith(PackedPayload.PREFIX));
+        assertTrue(content.matches("[0-9A-Z $%*+\\-./:]*"));
+        assertPayloads(payloads, PackedPayload.decode(content));
+    }
+
+    @Test
+    public void roundTripEmpty() {
+        final List<WifiPayload> payloads = new ArrayList<>();
+        assertPayloads(payloads, PackedPayload.decode(PackedPayload.encode(payloads)));
+    }
+
+    @Test
+    public void sharedPrefixIsShorter() {
+        final List<WifiPayload> shared = Arrays.asList(
+                new WifiPayload(WifiPayload.TYPE_WPA, "company-office", "x", false),
+                new WifiPayload(WifiPayload.TYPE_WPA, "company-guests", "x", false));
+        final List<WifiPayload> distinct = Arrays.asList(
+                new WifiPayload(WifiPayload.TYPE_WPA, "company-office", "x", false),
+                new WifiPayload(WifiPayload.TYPE_WPA, "xxxxxxx-guests", "x", false));
+        assertTrue(PackedPayload.encode(shared).length() < PackedPayload.encode(distinct).length());
+        assertPayloads(shared, PackedPayload.decode(PackedPayload.encode(shared)));
+    }
+
+    @Test
+    public void badCrc() {
+        final String content = PackedPayload.encode(networks());
+        final byte[] bytes = Base45.decode(content, PackedPayload.PREFIX.length());
+        for (int i : new int[]{0, bytes.length / 2, bytes.length - 1}) {
+            final byte[] broken = bytes.clone();
+            broken[i] ^= 0x01;
+            assertNull(PackedPayload.decode(
+                    Base45.encode(new StringBuilder(PackedPayload.PREFIX), broken, 0, broken.length).toString()));
+        }
+    }
+
+    @Test
+    public void truncated() {
+        final String content = PackedPayload.encode(networks());
+        for (int length = PackedPayload.PREFIX.length(); length < content.length(); length++) {
+            assertNull(PackedPayload.decode(content.substring(0, length)));
+        }
+        // valid crc over a truncated record
+        assertNull(PackedPayload.decode(pack(PackedPayload.VERSION, 1)));
+        assertNull(PackedPayload.decode(pack(PackedPayload.VERSION, 1, 0x10, 0, 4, 'h', 'o')));
+        assertNull(PackedPayload.decode(pack(PackedPayload.VERSION, 1, 0x10, 0, 1, 'h', 5, 'p')));
+        assertNull(PackedPayload.decode(pack(PackedPayload.VERSION, 1, 0, 0x80)));
+    }
+
+    @Test
+    public void malformed() {
+        assertNotNull(PackedPayload.decode(pack(PackedPayload.VERSION, 1, 0, 0, 1, 'h')));
+        // unknown version
+        assertNull(PackedPayload.decode(pack(2, 1, 0, 0, 1, 'h')));
+        // trailing bytes
+        assertNull(PackedPayload.decode(pack(PackedPayload.VERSION, 1, 0, 0, 1, 'h', 0)));
+        // prefix pointing before the first network
+        assertNull(PackedPayload.decode(pack(PackedPayload.VERSION, 1, 0, 1, 0, 0)));
+        // prefix longer than the other SSID
+        assertNull(PackedPayload.decode(pack(PackedPayload.VERSION, 2, 0, 0, 1, 'h', 0, 1, 2, 0)));
+        // count larger than the record
+        assertNull(PackedPayload.decode(pack(PackedPayload.VERSION, 0x7f)));
+        assertNull(PackedPayload.decode(pack(PackedPayload.VERSION, 0xff, 0xff, 0xff, 0xff, 0x0f)));
+    }
+
+    @Test
+    public void decodeInvalid() {
+        assertNull(PackedPayload.decode(null));
+        assertNull(PackedPayload.decode("WIFI:S:x;;"));
+        assertNull(PackedPayload.decode(PackedPayload.PREFIX));
+        assertNull(PackedPayload.decode(PackedPayload.PREFIX + "bb8"));
+        assertEquals(0, PackedPayload.decode(pack(PackedPayload.VERSION, 0)).size());
+    }
+}
@@ -0,0 +1,163 @@
+package de.ub0r.android.wifibarcode.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlainConfigTokenizerTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static NetworkBlock first(final String conf) throws IOException {
+        return new PlainConfigTokenizer(new StringReader(conf)).next();
+    }
+
+    private static SsidSecretIndex parse(final String conf) throws IOException {
+        return new PlainConfigParser().parse(new ByteArrayInputStream(conf.getBytes(UTF8)));
+    }
+
+    @Test
+    public void quotedSsidWithSpecialChars() throws IOException {
+        final NetworkBlock block = first("ctrl_interface=wlan0\n\n"
+                + "network={\n"
+                + "\tssid=\"a=b #c}d\"\n"
+                + "\tpsk=\"x=y\"\n"
+                + "\t# psk=\"commented\"\n"
+                + "\tkey_mgmt=WPA-PSK\n"
+                + "\tpriority=3\n"
+                + "}\n");
+        assertEquals("\"a=b #c}d\"", block.ssid);
+        assertEquals("\"a=b #c}d\"", block.rawSsid);
+        assertEquals("x=y", block.psk);
+        assertFalse(block.pskHex);
+        assertEquals("WPA-PSK", block.keyMgmt);
+        assertEquals(3, block.priority);
+        assertFalse(block.hidden);
+        assertEquals(SsidSecretIndex.KeyType.PSK, block.getKeyType());
+    }
+
+    @Test
+    public void multipleBlocks() throws IOException {
+        final PlainConfigTokenizer tokenizer = new PlainConfigTokenizer(new StringReader(
+                "network={\n\tssid=\"one\"\n\tscan_ssid=1\n}\n"
+                        + "network={\n\tpsk=\"no ssid, skipped\"\n}\n"
+                        + "network={\r\n\tssid=\"two\"  \r\n\tkey_mgmt=NONE\r\n}\r\n"));
+        final NetworkBlock one = tokenizer.next();
+        assertEquals("\"one\"", one.ssid);
+        assertTrue(one.hidden);
+        final NetworkBlock two = tokenizer.next();
+        assertEquals("\"two\"", two.ssid);
+        assertNull(two.getSecret());
+        assertEquals(SsidSecretIndex.KeyType.NONE, two.getKeyType());
+        assertNull(tokenizer.next());
+    }
+
+    @Test
+    public void bssidAndPrefixes() throws IOException {
+        final NetworkBlock block = first("network={\n"
+                + "\tbssid=00:11:22:33:44:55\n"
+                + "\tssid=\"home\"\n"
+                + "\tssid_suffix=\"x\"\n"
+                + "\tpsk_hint=\"no\"\n"
+                + "\tpsk=\"secret\"\n"
+                + "}\n");
+        assertEquals("\"home\"", block.ssid);
+        assertEquals("secret", block.psk);
+
+        final SsidSecretIndex index = parse("network={\n\tssid=\"home\"\n\tpsk=\"one\"\n}\n"
+                + "network={\n\tssid=\"home2\"\n\tpsk=\"two\"\n}\n"
+                + "network={\n\tbssid=00:11:22:33:44:55\n\tpsk=\"three\"\n}\n");
+        assertEquals(2, index.size());
+        assertEquals("one", index.getSecret("\"home\""));
+        assertEquals("two", index.getSecret("\"home2\""));
+        assertNull(index.getSecret("\"hom\""));
+        assertNull(index.getSecret("00:11:22:33:44:55"));
+    }
+
+    @Test
+    public void hexSsid() throws IOException {
+        final SsidSecretIndex index = parse("network={\n\tssid=68c3a9\n\tpsk=\"secret\"\n}\n"
+                + "network={\n\tssid=c328\n\tpsk=\"binary\"\n}\n");
+        // decoded and as found in the file
+        assertEquals("secret", index.getSecret("\"h\u00e9\""));
+        assertEquals("secret", index.getSecret("68c3a9"));
+        // invalid UTF-8 stays hex
+        assertEquals("binary", index.getSecret("c328"));
+        assertEquals(3, index.size());
+
+        final NetworkBlock block = first("network={\n\tssid=c328\n}\n");
+        assertEquals("c328", block.ssid);
+        assertEquals("c328", block.rawSsid);
+    }
+
+    @Test
+    public void wepKeys() throws IOException {
+        final String keys = "\twep_key0=\"first\"\n"
+                + "\twep_key1=0123456789\n"
+                + "\twep_key2=\"third\"\n"
+                + "\twep_key3=\"fourth\"\n"
+                + "\twep_key4=\"ignored\"\n";
+        NetworkBlock block = first("network={\n\tssid=\"wep\"\n" + keys + "\twep_tx_keyidx=1\n}\n");
+        assertArrayEquals(new String[]{"first", "0123456789", "third", "fourth"}, block.wepKeys);
+        assertFalse(block.wepKeysHex[0]);
+        assertTrue(block.wepKeysHex[1]);
+        assertEquals("0123456789", block.getSecret());
+        assertEquals(SsidSecretIndex.KeyType.WEP, block.getKeyType());
+
+        block = first("network={\n\tssid=\"wep\"\n" + keys + "\twep_tx_keyidx=3\n}\n");
+        assertEquals("fourth", block.getSecret());
+        // out of range, falls back to the first key
+        block = first("network={\n\tssid=\"wep\"\n" + keys + "\twep_tx_keyidx=7\n}\n");
+        assertEquals("first", block.getSecret());
+        block = first("network={\n\tssid=\"wep\"\n" + keys + "}\n");
+        assertEquals("first", block.getSecret());
+    }
+
+    @Test
+    public void hexPsk() throws IOException {
+        final String hex = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+        final NetworkBlock block = first("network={\n\tssid=\"home\"\n\tpsk=" + hex + "\n}\n");
+        assertEquals(hex, block.psk);
+        assertTrue(block.pskHex);
+        assertEquals(SsidSecretIndex.KeyType.PSK, block.getKeyType());
+    }
+
+    @Test
+    public void longLines() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("# ");
+        for (int i = 0; i < PlainConfigTokenizer.MAX_LINE * 3; i++) {
+            sb.append('x');
+        }
+        final String comment = sb.toString();
+        sb.setLength(0);
+        sb.append("\tpsk=\"");
+        while (sb.length() < PlainConfigTokenizer.MAX_LINE * 2) {
+            sb.append("abcdefgh");
+        }
+        sb.append("\"\n");
+        final NetworkBlock block = first(comment + "\nnetwork={\n\tssid=\"long\"\n" + sb
+                + "\tkey_mgmt=WPA-PSK\n}\n");
+        assertEquals("\"long\"", block.ssid);
+        // truncated, the closing quote is lost
+        assertEquals(PlainConfigTokenizer.MAX_LINE - "\tpsk=".length(), block.psk.length());
+        assertTrue(block.psk.startsWith("\"abcdefgh"));
+        // following lines are read as usual
+        assertEquals("WPA-PSK", block.keyMgmt);
+    }
+
+    @Test
+    public void empty() throws IOException {
+        assertNull(first(""));
+        assertNull(first("network={\n\tssid=\"unterminated\"\n"));
+    }
+}
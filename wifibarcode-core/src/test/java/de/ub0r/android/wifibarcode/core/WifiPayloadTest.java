@@ -0,0 +1,137 @@
+package de.ub0r.android.wifibarcode.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WifiPayloadTest {
+
+    private static final String[] VALUES = new String[]{"plain", "a\\b", "a;b", "a,b", "a:b", "a\"b",
+            "\\;,:\"", "x\\;y;;", "\"quoted\"", "", "\u00fc\u20ac"};
+
+    private static WifiPayload roundTrip(final WifiPayload payload) {
+        return WifiPayload.parse(payload.toString());
+    }
+
+    private static void assertPayload(final WifiPayload expected, final WifiPayload actual) {
+        assertEquals(expected.type, actual.type);
+        assertEquals(expected.ssid, actual.ssid);
+        assertEquals(expected.type == WifiPayload.TYPE_OPEN ? null : expected.password, actual.password);
+        assertEquals(expected.hidden, actual.hidden);
+        assertEquals(expected.eapMethod, actual.eapMethod);
+        assertEquals(expected.anonymousIdentity, actual.anonymousIdentity);
+        assertEquals(expected.identity, actual.identity);
+        assertEquals(expected.phase2Method, actual.phase2Method);
+    }
+
+    @Test
+    public void roundTripAllTypes() {
+        final int[] types = new int[]{WifiPayload.TYPE_OPEN, WifiPayload.TYPE_WEP, WifiPayload.TYPE_WPA,
+                WifiPayload.TYPE_SAE, WifiPayload.TYPE_WPA2_EAP};
+        for (int type : types) {
+            for (String ssid : VALUES) {
+                for (String password : VALUES) {
+                    for (boolean hidden : new boolean[]{false, true}) {
+                        final WifiPayload p = new WifiPayload(type, ssid, password, hidden);
+                        assertPayload(p, roundTrip(p));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundTripEapFields() {
+        for (String value : VALUES) {
+            final WifiPayload p = new WifiPayload(WifiPayload.TYPE_WPA2_EAP, "corp", value, false,
+                    "PEAP", value, "user" + value, "MSCHAPV2");
+            assertPayload(p, roundTrip(p));
+        }
+        final WifiPayload p = new WifiPayload(WifiPayload.TYPE_WPA2_EAP, "corp", "pw", true,
+                "TTLS", null, "user", null);
+        assertPayload(p, roundTrip(p));
+    }
+
+    @Test
+    public void escapesSpecialChars() {
+        assertEquals("WIFI:T:WPA;S:\\\\\\;\\,\\:\\\";P:pw;;",
+                WifiPayload.build(WifiPayload.TYPE_WPA, "\\;,:\"", "pw"));
+        for (char c : new char[]{'\\', ';', ',', ':', '"'}) {
+            final String value = "a" + c + "b";
+            final WifiPayload p = WifiPayload.parse(WifiPayload.build(WifiPayload.TYPE_WPA, value, value));
+            assertEquals(value, p.ssid);
+            assertEquals(value, p.password);
+        }
+    }
+
+    @Test
+    public void build() {
+        assertEquals("WIFI:T:WPA;S:home;P:secret;;", WifiPayload.build(WifiPayload.TYPE_WPA, "home", "secret"));
+        assertEquals("WIFI:T:nopass;S:open;P:nopass;;", WifiPayload.build(WifiPayload.TYPE_OPEN, "open", "ignored"));
+        assertEquals("WIFI:T:WEP;S:wep;P:;;", WifiPayload.build(WifiPayload.TYPE_WEP, "wep", null));
+        assertEquals("WIFI:T:WPA;S:h;P:p;H:true;;",
+                new WifiPayload(WifiPayload.TYPE_WPA, "h", "p", true).toString());
+    }
+
+    @Test
+    public void parseQuotedValues() {
+        final WifiPayload p = WifiPayload.parse("WIFI:S:\"quoted\";T:WPA;P:\"ab\"c;;");
+        assertEquals("quoted", p.ssid);
+        // not enclosed in quotes
+        assertEquals("\"ab\"c", p.password);
+        assertEquals(WifiPayload.TYPE_WPA, p.type);
+    }
+
+    @Test
+    public void parseFirstFieldWins() {
+        final WifiPayload p = WifiPayload.parse("WIFI:S:first;T:WEP;S:second;T:WPA;P:one;P:two;;");
+        assertEquals("first", p.ssid);
+        assertEquals(WifiPayload.TYPE_WEP, p.type);
+        assertEquals("one", p.password);
+    }
+
+    @Test
+    public void parseIgnoresUnknownFields() {
+        final WifiPayload p = WifiPayload.parse("WIFI:X:foo;T:WPA;ZZ:b\\;ar;S:home;R:1;P:secret;;");
+        assertEquals(WifiPayload.TYPE_WPA, p.type);
+        assertEquals("home", p.ssid);
+        assertEquals("secret", p.password);
+    }
+
+    @Test
+    public void parseTypeNames() {
+        assertEquals(WifiPayload.TYPE_WPA, WifiPayload.parse("WIFI:T:wpa;S:x;;").type);
+        assertEquals(WifiPayload.TYPE_WPA, WifiPayload.parse("WIFI:T:WPA2;S:x;;").type);
+        assertEquals(WifiPayload.TYPE_OPEN, WifiPayload.parse("WIFI:T:open;S:x;;").type);
+        assertEquals(WifiPayload.TYPE_SAE, WifiPayload.parse("WIFI:T:SAE;S:x;;").type);
+        assertEquals(WifiPayload.TYPE_UNKNOWN, WifiPayload.parse("WIFI:S:x;;").type);
+    }
+
+    @Test
+    public void parseOpenNetworkHasNoPassword() {
+        assertNull(WifiPayload.parse("WIFI:T:nopass;S:open;P:nopass;;").password);
+    }
+
+    @Test
+    public void parseHidden() {
+        assertTrue(WifiPayload.parse("WIFI:T:WPA;S:x;P:y;H:true;;").hidden);
+        assertFalse(WifiPayload.parse("WIFI:T:WPA;S:x;P:y;H:false;;").hidden);
+    }
+
+    @Test
+    public void unknownType() {
+        final WifiPayload p = WifiPayload.parse("WIFI:T:WPA3;S:x;P:y;;");
+        assertEquals(WifiPayload.TYPE_UNKNOWN, p.type);
+        assertEquals("WIFI:S:x;P:y;;", p.toString());
+        assertPayload(p, roundTrip(p));
+    }
+
+    @Test
+    public void parseInvalid() {
+        assertNull(WifiPayload.parse(null));
+        assertNull(WifiPayload.parse("http://example.com/"));
+    }
+}
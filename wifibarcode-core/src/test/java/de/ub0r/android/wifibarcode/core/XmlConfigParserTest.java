@@ -0,0 +1,147 @@
+package de.ub0r.android.wifibarcode.core;
+
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class XmlConfigParserTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String HEAD = "<?xml version='1.0' encoding='utf-8' standalone='yes' ?>\n"
+            + "<WifiConfigStoreData>\n<int name=\"Version\" value=\"1\" />\n<NetworkList>\n";
+    private static final String TAIL = "</NetworkList>\n</WifiConfigStoreData>\n";
+
+    private static String network(final String body) {
+        return network(body, "");
+    }
+
+    private static String network(final String body, final String siblings) {
+        return "<Network>\n<WifiConfiguration>\n" + body + "</WifiConfiguration>\n" + siblings + "</Network>\n";
+    }
+
+    private static Map<String, NetworkBlock> parseAll(final String xml) throws XmlPullParserException, IOException {
+        return new XmlConfigParser().parseAll(new ByteArrayInputStream(xml.getBytes(UTF8)));
+    }
+
+    @Test
+    public void parse() throws XmlPullParserException, IOException {
+        final String xml = HEAD
+                + network("<string name=\"SSID\">&quot;home&quot;</string>\n"
+                + "<string name=\"PreSharedKey\">&quot;a&amp;b&quot;</string>\n"
+                + "<int name=\"Priority\" value=\"7\" />\n")
+                + network("<string name=\"SSID\">&quot;open&quot;</string>\n<null name=\"PreSharedKey\" />\n")
+                + TAIL;
+        final Map<String, NetworkBlock> networks = parseAll(xml);
+        assertEquals(Arrays.asList("\"home\"", "\"open\""), Arrays.asList(networks.keySet().toArray()));
+        final NetworkBlock home = networks.get("\"home\"");
+        assertEquals("\"home\"", home.rawSsid);
+        assertEquals("a&b", home.psk);
+        assertFalse(home.pskHex);
+        assertEquals(7, home.priority);
+        assertNull(networks.get("\"open\"").getSecret());
+
+        final SsidSecretIndex index = new XmlConfigParser().parse(new ByteArrayInputStream(xml.getBytes(UTF8)));
+        assertEquals(2, index.size());
+        assertEquals("a&b", index.getSecret("\"home\""));
+    }
+
+    @Test
+    public void skipSubtrees() throws XmlPullParserException, IOException {
+        final String decoy = "<string name=\"SSID\">&quot;decoy&quot;</string>\n"
+                + "<string name=\"PreSharedKey\">&quot;wrong&quot;</string>\n";
+        final String xml = HEAD
+                + network("<string name=\"SSID\">&quot;home&quot;</string>\n"
+                + "<EnterpriseConfig>\n" + decoy + "</EnterpriseConfig>\n"
+                + "<string name=\"PreSharedKey\">&quot;secret&quot;</string>\n",
+                "<NetworkStatus>\n" + decoy + "<WifiConfiguration>\n" + decoy + "</WifiConfiguration>\n"
+                        + "</NetworkStatus>\n"
+                        + "<IpConfiguration>\n<Nested>\n" + decoy + "</Nested>\n</IpConfiguration>\n")
+                + "</NetworkList>\n<SoftAp>\n" + network(decoy) + "</SoftAp>\n</WifiConfigStoreData>\n";
+        final Map<String, NetworkBlock> networks = parseAll(xml);
+        assertEquals(1, networks.size());
+        assertEquals("secret", networks.get("\"home\"").psk);
+    }
+
+    @Test
+    public void hiddenSsid() throws XmlPullParserException, IOException {
+        final Map<String, NetworkBlock> networks = parseAll(HEAD
+                + network("<string name=\"SSID\">&quot;hidden&quot;</string>\n"
+                + "<boolean name=\"HiddenSSID\" value=\"true\" />\n")
+                + network("<string name=\"SSID\">&quot;visible&quot;</string>\n"
+                + "<boolean name=\"HiddenSSID\" value=\"false\" />\n")
+                + TAIL);
+        assertTrue(networks.get("\"hidden\"").hidden);
+        assertFalse(networks.get("\"visible\"").hidden);
+    }
+
+    private static String keyMgmt(final String hex) throws XmlPullParserException, IOException {
+        return parseAll(HEAD + network("<string name=\"SSID\">&quot;x&quot;</string>\n"
+                + "<byte-array name=\"AllowedKeyMgmt\" num=\"" + hex.length() / 2 + "\">" + hex + "</byte-array>\n")
+                + TAIL).get("\"x\"").keyMgmt;
+    }
+
+    @Test
+    public void allowedKeyMgmt() throws XmlPullParserException, IOException {
+        assertEquals("NONE", keyMgmt("01"));
+        assertEquals("WPA-PSK", keyMgmt("02"));
+        assertEquals("WPA-PSK IEEE8021X", keyMgmt("0a"));
+        // bits of the second byte
+        assertEquals("SAE", keyMgmt("0001"));
+        assertEquals("WPA-EAP OWE", keyMgmt("0402"));
+        // unknown bits are ignored
+        assertEquals("NONE", keyMgmt("0180"));
+        assertNull(keyMgmt("00"));
+        assertNull(keyMgmt(""));
+    }
+
+    @Test
+    public void wepKeys() throws XmlPullParserException, IOException {
+        final String keys = "<null name=\"PreSharedKey\" />\n"
+                + "<string-array name=\"WEPKeys\" num=\"4\">\n"
+                + "<item value=\"&quot;first&quot;\" />\n"
+                + "<item value=\"0123456789\" />\n"
+                + "<item value=\"\" />\n"
+                + "<item value=\"&quot;fourth&quot;\" />\n"
+                + "</string-array>\n";
+        final Map<String, NetworkBlock> networks = parseAll(HEAD
+                + network("<string name=\"SSID\">&quot;a&quot;</string>\n" + keys
+                + "<int name=\"WEPTxKeyIndex\" value=\"1\" />\n")
+                + network("<string name=\"SSID\">&quot;b&quot;</string>\n" + keys
+                + "<int name=\"WEPTxKeyIndex\" value=\"3\" />\n")
+                + network("<string name=\"SSID\">&quot;c&quot;</string>\n" + keys)
+                + TAIL);
+        final NetworkBlock a = networks.get("\"a\"");
+        assertArrayEquals(new String[]{"first", "0123456789", null, "fourth"}, a.wepKeys);
+        assertFalse(a.wepKeysHex[0]);
+        assertTrue(a.wepKeysHex[1]);
+        assertEquals("0123456789", a.getSecret());
+        assertEquals(SsidSecretIndex.KeyType.WEP, a.getKeyType());
+        assertEquals("fourth", networks.get("\"b\"").getSecret());
+        assertEquals("first", networks.get("\"c\"").getSecret());
+    }
+
+    @Test
+    public void duplicateSsids() throws XmlPullParserException, IOException {
+        final Map<String, NetworkBlock> networks = parseAll(HEAD
+                + network("<string name=\"SSID\">&quot;dup&quot;</string>\n"
+                + "<string name=\"PreSharedKey\">&quot;first&quot;</string>\n")
+                + network("<string name=\"SSID\">&quot;dup&quot;</string>\n"
+                + "<string name=\"PreSharedKey\">&quot;second&quot;</string>\n")
+                + network("<string name=\"PreSharedKey\">&quot;no ssid&quot;</string>\n")
+                + TAIL);
+        assertEquals(1, networks.size());
+        assertEquals("first", networks.get("\"dup\"").psk);
+    }
+}
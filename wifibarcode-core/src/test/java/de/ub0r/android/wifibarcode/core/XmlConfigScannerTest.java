@@ -0,0 +1,106 @@
+package de.ub0r.android.wifibarcode.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class XmlConfigScannerTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String HEAD = "<?xml version='1.0' encoding='utf-8' standalone='yes' ?>\n"
+            + "<WifiConfigStoreData>\n<int name=\"Version\" value=\"1\" />\n<NetworkList>\n";
+    private static final String TAIL = "</NetworkList>\n</WifiConfigStoreData>\n";
+
+    private static String network(final String body) {
+        return "<Network>\n<WifiConfiguration>\n" + body + "</WifiConfiguration>\n</Network>\n";
+    }
+
+    private static ByteBuffer wrap(final String xml) {
+        return ByteBuffer.wrap(xml.getBytes(UTF8));
+    }
+
+    @Test
+    public void scan() {
+        final String xml = HEAD
+                + network("<string name=\"SSID\">&quot;home&quot;</string>\n"
+                + "<string name=\"PreSharedKey\">&quot;a&amp;b&lt;c&#233;&quot;</string>\n")
+                + network("<string name=\"SSID\">&quot;wep&quot;</string>\n<null name=\"PreSharedKey\" />\n"
+                + "<string-array name=\"WEPKeys\" num=\"4\">\n<item value=\"\" />\n"
+                + "<item value=\"&quot;second&quot;\" />\n<item value=\"\" />\n<item value=\"\" />\n"
+                + "</string-array>\n<int name=\"WEPTxKeyIndex\" value=\"1\" />\n")
+                + network("<string name=\"SSID\">&quot;open&quot;</string>\n<null name=\"PreSharedKey\" />\n"
+                + "<null name=\"WEPKeys\" />\n")
+                + TAIL;
+        final SsidSecretIndex index = new XmlConfigScanner().scan(wrap(xml));
+        assertNotNull(index);
+        assertEquals(3, index.size());
+        assertEquals("a&b<cé", index.getSecret("\"home\""));
+        assertEquals("second", index.getSecret("\"wep\""));
+        assertNull(index.getSecret("\"open\""));
+    }
+
+    @Test
+    public void scanEmpty() {
+        final SsidSecretIndex index = new XmlConfigScanner().scan(wrap(HEAD + TAIL));
+        assertNotNull(index);
+        assertEquals(0, index.size());
+    }
+
+    private static void assertFallback(final String xml, final String error) {
+        final XmlConfigScanner scanner = new XmlConfigScanner();
+        assertNull(scanner.scan(wrap(xml)));
+        assertTrue(scanner.getError(), scanner.getError().startsWith(error));
+    }
+
+    @Test
+    public void noRoot() {
+        assertFallback("<WifiConfiguration>\n</WifiConfiguration>\n", "no WifiConfigStoreData");
+    }
+
+    @Test
+    public void missingSsid() {
+        assertFallback(HEAD + network("<string name=\"PreSharedKey\">&quot;x&quot;</string>\n") + TAIL,
+                "no SSID");
+    }
+
+    @Test
+    public void unterminatedElement() {
+        assertFallback(HEAD + "<Network>\n<WifiConfiguration>\n<string name=\"SSID\">&quot;x&quot;</string>\n",
+                "unterminated WifiConfiguration");
+        assertFallback(HEAD + network("<string name=\"SSID\">&quot;x&quot;\n") + TAIL,
+                "unterminated string");
+        assertFallback(HEAD + network("<string name=\"SSID\">&quot;x&quot;</string>\n"
+                + "<string-array name=\"WEPKeys\" num=\"4\">\n<item value=\"\" />\n") + TAIL,
+                "unterminated WEPKeys");
+    }
+
+    @Test
+    public void badUtf8() {
+        final byte[] head = (HEAD + "<Network>\n<WifiConfiguration>\n<string name=\"SSID\">").getBytes(UTF8);
+        final byte[] tail = ("</string>\n</WifiConfiguration>\n</Network>\n" + TAIL).getBytes(UTF8);
+        final ByteBuffer buffer = ByteBuffer.allocate(head.length + 2 + tail.length);
+        buffer.put(head).put((byte) 0xc3).put((byte) 0x28).put(tail).flip();
+        final XmlConfigScanner scanner = new XmlConfigScanner();
+        assertNull(scanner.scan(buffer));
+        assertTrue(scanner.getError(), scanner.getError().startsWith("invalid UTF-8"));
+    }
+
+    @Test
+    public void unknownEntity() {
+        assertFallback(HEAD + network("<string name=\"SSID\">&quot;x&nbsp;y&quot;</string>\n") + TAIL,
+                "unknown entity");
+    }
+
+    @Test
+    public void markupInText() {
+        assertFallback(HEAD + network("<string name=\"SSID\"><![CDATA[x]]></string>\n") + TAIL,
+                "markup in text");
+    }
+}